@@ -0,0 +1,349 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * SimulationBenchmark times the steps of a trial on realistic inputs: the
+ * game setup of DemandAndCompetitivenessExperiment with the given numDays,
+ * number of user types (other than 8, made up from the real ones, see
+ * Inputs.makeUserTypes) and campaign lengths. Run it before and after a
+ * performance change to see what the change is worth.
+ *
+ * Benchmarks (one op each):
+ * 	simulate		CampaignSimulator.simulateGame
+ * 	dayGraphs		constructing every day's adjacency matrix
+ * 	multiDayGraph		constructMultiDayAdjacencyMatrix
+ * 	dayMinCost		MinCostMaxFlow on every day's graph
+ * 	multiDayMinCost		MinCostMaxFlow on the multiday graph
+ * 	multiDayAuto		the AUTO engine on the multiday graph
+ * 	collectStats		collectAndOutputStats (writes a trial's files to a temp folder)
+ *
+ * Every combination of the parameters runs every benchmark: a few warmup
+ * iterations, then measured iterations of at least millis each, run back
+ * to back as many ops as fit. The mean time per op and its 95% confidence
+ * interval over the iterations are printed as csv.
+ *
+ * Arguments are key=value, lists comma separated, e.g.
+ * 	java SimulationBenchmark days=30,60 userTypes=4,8 lengths=3-5-10,7-10-14 only=simulate,multiDayGraph
+ * Other keys: percents (20-50-80), warmup (3), iterations (5), millis (500), seed (1234).
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class SimulationBenchmark {
+
+	//results are folded into this so the JIT can't drop the work
+	static volatile long sink;
+
+	/**
+	 * one benchmark, set up once per parameter combination
+	 */
+	static abstract class Benchmark {
+		String name;
+
+		Benchmark(String name){
+			this.name = name;
+		}
+
+		/**
+		 * builds the inputs for one parameter combination (not timed)
+		 * @param setup
+		 */
+		void setUp(Inputs setup){
+		}
+
+		/**
+		 * runs one op and returns something that depends on its work
+		 * @return
+		 */
+		abstract long run();
+	}
+
+	/**
+	 * the inputs of one parameter combination: a simulated game, its graphs
+	 * and its solved multiday flow. Benchmarks that change a game or a
+	 * simulator make their own with newSimulator/newResult, so every
+	 * benchmark sees the same inputs whatever ran before it.
+	 */
+	static class Inputs {
+		int numDays;
+		int numUserTypes;
+		int[] lengths;
+		int[] percents;
+		long seed;
+		String[] userTypes;
+		int[] sizeUserTypes;
+		DemandAndCompetitivenessExperiment experiment;
+		GameResult result;
+		ArrayList<FlowGraph> dayGraphs = new ArrayList<FlowGraph>();
+
+		Inputs(int numDays, int numUserTypes, int[] lengths, int[] percents, long seed){
+			this.numDays = numDays;
+			this.numUserTypes = numUserTypes;
+			this.lengths = lengths;
+			this.percents = percents;
+			this.seed = seed;
+
+			String folder = new File(System.getProperty("java.io.tmpdir"), "SimulationBenchmark").getPath();
+			experiment = new DemandAndCompetitivenessExperiment("bench", folder, 1, seed, false);
+			experiment.numDays = numDays;
+			experiment.setParamName(percents, lengths);
+			makeUserTypes(experiment.userTypes, experiment.sizeUserTypes, numUserTypes);
+
+			result = newResult();
+			for(int d = 0;d<numDays;d++){
+				dayGraphs.add(FlowGraph.fromMatrix(result.getDaysAdjacencyMatrix(d)));
+			}
+			result.calculateMultiDayFlow(MaxFlowSolvers.Engine.DENSE);
+			result.calcMultidayUnusedFlow();
+		}
+
+		/**
+		 * makes count user types covering the same population as the real
+		 * ones, so every segment still has users. With more, real types are
+		 * split into copies (MYH0, MYH1...) sharing their size; the digit is
+		 * an attribute no segment asks for, so copies match what the type
+		 * did. With fewer, neighbouring types are merged into one with all
+		 * their attributes (MYH and MYL into MYHL) and their summed size.
+		 * @param base
+		 * @param baseSizes
+		 * @param count
+		 */
+		void makeUserTypes(String[] base, int[] baseSizes, int count){
+			userTypes = new String[count];
+			sizeUserTypes = new int[count];
+			if(count>=base.length){
+				for(int i = 0;i<count;i++){
+					int b = i%base.length;
+					int copies = count/base.length+(b<count%base.length ? 1 : 0);
+					int copy = i/base.length;
+					userTypes[i] = copies>1 ? base[b]+copy : base[b];
+					//the first copy takes what doesn't divide evenly
+					sizeUserTypes[i] = baseSizes[b]/copies+(copy==0 ? baseSizes[b]%copies : 0);
+				}
+				return;
+			}
+			for(int i = 0;i<count;i++){
+				userTypes[i] = "";
+			}
+			for(int b = 0;b<base.length;b++){
+				int i = b*count/base.length;
+				for(char c : base[b].toCharArray()){
+					if(userTypes[i].indexOf(c)<0){
+						userTypes[i]+=c;
+					}
+				}
+				sizeUserTypes[i]+=baseSizes[b];
+			}
+		}
+
+		/**
+		 * a simulator of this combination's game, seeded the same every time
+		 * @return
+		 */
+		CampaignSimulator newSimulator(){
+			return new CampaignSimulator(lengths, experiment.segments, userTypes, sizeUserTypes,
+					percents, numDays, experiment.numAgents, seed);
+		}
+
+		/**
+		 * the first game of a new simulator, with its daily and multiday graphs
+		 * @return
+		 */
+		GameResult newResult(){
+			CampaignSimulator simulator = newSimulator();
+			GameResult game = simulator.simulateGame(0);
+			simulator.constructAllAdjacencyMatricies(game);
+			simulator.constructMultiDayAdjacencyMatrix(game);
+			return game;
+		}
+
+		public String toString(){
+			return numDays+","+numUserTypes+","+join(lengths)+","+join(percents);
+		}
+	}
+
+
+	static ArrayList<Benchmark> benchmarks(){
+		ArrayList<Benchmark> all = new ArrayList<Benchmark>();
+		all.add(new Benchmark("simulate") {
+			CampaignSimulator simulator;
+			void setUp(Inputs setup){
+				simulator = setup.newSimulator();
+			}
+			long run(){
+				return simulator.simulateGame(0).getCampaigns().size();
+			}
+		});
+		all.add(new Benchmark("dayGraphs") {
+			CampaignSimulator simulator;
+			GameResult game;
+			void setUp(Inputs setup){
+				simulator = setup.newSimulator();
+				game = setup.newResult();
+			}
+			long run(){
+				simulator.constructAllAdjacencyMatricies(game);
+				return game.getDayNumNodes(0);
+			}
+		});
+		all.add(new Benchmark("multiDayGraph") {
+			CampaignSimulator simulator;
+			GameResult game;
+			void setUp(Inputs setup){
+				simulator = setup.newSimulator();
+				game = setup.newResult();
+			}
+			long run(){
+				simulator.constructMultiDayAdjacencyMatrix(game);
+				return game.getMultiDayGraph().getNumEdges();
+			}
+		});
+		all.add(new Benchmark("dayMinCost") {
+			Inputs in;
+			void setUp(Inputs setup){
+				in = setup;
+			}
+			long run(){
+				long total = 0;
+				MinCostMaxFlow maxFlow = new MinCostMaxFlow();
+				for(FlowGraph graph : in.dayGraphs){
+					total+=maxFlow.getMaxFlow(graph, 0, graph.getNumNodes()-1)[0];
+				}
+				return total;
+			}
+		});
+		all.add(new Benchmark("multiDayMinCost") {
+			FlowGraph graph;
+			void setUp(Inputs setup){
+				graph = setup.result.getMultiDayGraph();
+			}
+			long run(){
+				return new MinCostMaxFlow().getMaxFlow(graph, 0, graph.getNumNodes()-1)[0];
+			}
+		});
+		all.add(new Benchmark("multiDayAuto") {
+			FlowGraph graph;
+			void setUp(Inputs setup){
+				graph = setup.result.getMultiDayGraph();
+			}
+			long run(){
+				MaxFlowSolver maxFlow = MaxFlowSolvers.create(MaxFlowSolvers.Engine.AUTO, graph);
+				return maxFlow.getMaxFlow(graph, 0, graph.getNumNodes()-1)[0];
+			}
+		});
+		all.add(new Benchmark("collectStats") {
+			Inputs in;
+			void setUp(Inputs setup){
+				in = setup;
+			}
+			long run(){
+				in.experiment.collectAndOutputStats(in.result);
+				return in.experiment.numUnderMet;
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * runs warmup then measured iterations of one benchmark
+	 * @param bench
+	 * @param warmup
+	 * @param iterations
+	 * @param millis
+	 * @return nanoseconds per op of each measured iteration
+	 */
+	static RunningStat measure(Benchmark bench, int warmup, int iterations, long millis){
+		RunningStat nsPerOp = new RunningStat();
+		long minNanos = millis*1000000L;
+		for(int i = 0;i<warmup+iterations;i++){
+			long ops = 0;
+			long hash = 0;
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				hash+=bench.run();
+				ops++;
+				elapsed = System.nanoTime()-start;
+			} while(elapsed<minNanos);
+			sink+=hash;
+			if(i>=warmup){
+				nsPerOp.add((double)elapsed/ops);
+			}
+		}
+		return nsPerOp;
+	}
+
+
+	public static void main(String[] args){
+		HashMap<String,String> options = new HashMap<String,String>();
+		options.put("days", "60");
+		options.put("userTypes", "8");
+		options.put("lengths", "3-5-10");
+		options.put("percents", "20-50-80");
+		options.put("warmup", "3");
+		options.put("iterations", "5");
+		options.put("millis", "500");
+		options.put("seed", "1234");
+		for(String arg : args){
+			int eq = arg.indexOf('=');
+			if(eq<0 || !options.containsKey(arg.substring(0, eq)) && !arg.startsWith("only=")){
+				System.out.println("unknown argument "+arg+", expected key=value with key one of "+options.keySet()+" or only");
+				return;
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq+1));
+		}
+		int warmup = Integer.parseInt(options.get("warmup"));
+		int iterations = Integer.parseInt(options.get("iterations"));
+		long millis = Long.parseLong(options.get("millis"));
+		long seed = Long.parseLong(options.get("seed"));
+		ArrayList<String> only = null;
+		if(options.containsKey("only")){
+			only = new ArrayList<String>(Arrays.asList(options.get("only").split(",")));
+		}
+
+		ArrayList<Benchmark> benchmarks = benchmarks();
+		System.out.println("benchmark,numDays,userTypes,lengths,percents,nsPerOp,ci95,iterations");
+		for(String days : options.get("days").split(",")){
+			for(String types : options.get("userTypes").split(",")){
+				for(String lengths : options.get("lengths").split(",")){
+					for(String percents : options.get("percents").split(",")){
+						Inputs inputs = new Inputs(Integer.parseInt(days), Integer.parseInt(types),
+								parse(lengths), parse(percents), seed);
+						for(Benchmark bench : benchmarks){
+							if(only!=null && !only.contains(bench.name)){
+								continue;
+							}
+							bench.setUp(inputs);
+							RunningStat nsPerOp = measure(bench, warmup, iterations, millis);
+							System.out.println(bench.name+","+inputs+","+nsPerOp.getMean()+","
+									+nsPerOp.getConfidenceHalfWidth()+","+nsPerOp.getCount());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static int[] parse(String values){
+		String[] parts = values.split("-");
+		int[] parsed = new int[parts.length];
+		for(int i = 0;i<parts.length;i++){
+			parsed[i] = Integer.parseInt(parts[i]);
+		}
+		return parsed;
+	}
+
+	private static String join(int[] values){
+		StringBuilder joined = new StringBuilder();
+		for(int i = 0;i<values.length;i++){
+			if(i>0){
+				joined.append('-');
+			}
+			joined.append(values[i]);
+		}
+		return joined.toString();
+	}
+
+}
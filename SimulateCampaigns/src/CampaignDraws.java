@@ -0,0 +1,121 @@
+import java.util.Random;
+
+/**
+ * CampaignDraws holds every random choice one simulated game makes: the
+ * market of each agent's first campaign, and the length, market and
+ * percent of the campaign drawn each day. Only indices into the lengths,
+ * segments and percents arrays are stored, never the values, so one set of
+ * draws can be played under any lengths/percents.
+ *
+ * Giving trial t of every grid point the same draws (common random numbers)
+ * means the points see the same campaign arrivals and differ only in the
+ * parameters, so differences between neighbouring points aren't swamped
+ * by simulation noise. The draws never change once made and can be shared
+ * between threads.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class CampaignDraws {
+
+	private int numLengths;
+	private int numSegments;
+	private int numPercents;
+
+	private int[] firstMarkets; //market of each agent's first campaign
+	private int[] lengthIndex; //per day
+	private int[] marketIndex; //per day
+	private int[] percentIndex; //per day
+
+
+	/**
+	 * draws a game from a seed
+	 * @param seed
+	 * @param numAgents
+	 * @param numDays
+	 * @param segments
+	 * @param numLengths
+	 * @param numPercents
+	 */
+	public CampaignDraws(long seed, int numAgents, int numDays, String[] segments, int numLengths, int numPercents){
+		this(new Random(seed), numAgents, numDays, segments, numLengths, numPercents);
+	}
+
+	/**
+	 * draws a game from rand, in the order the simulator always has: the
+	 * first campaigns, then length, market and percent for each day
+	 * @param rand
+	 * @param numAgents
+	 * @param numDays
+	 * @param segments
+	 * @param numLengths
+	 * @param numPercents
+	 */
+	public CampaignDraws(Random rand, int numAgents, int numDays, String[] segments, int numLengths, int numPercents){
+		this.numLengths = numLengths;
+		this.numSegments = segments.length;
+		this.numPercents = numPercents;
+
+		//the first campaigns are in two attribute markets, redrawn up to 15 times;
+		//if the 15th draw still isn't one, that market is kept
+		firstMarkets = new int[numAgents];
+		for(int a=0;a<numAgents;a++){
+			int market = rand.nextInt(segments.length);
+			String mkt = segments[market];
+			int count = 1;
+			//give up after 15 tries (this was || count>=15, which once it got to 15
+			//kept drawing until count overflowed, about 2^31 draws later)
+			while(mkt.toCharArray().length!=2 && count<15){
+				market = rand.nextInt(segments.length);
+				mkt = segments[market];
+				count++;
+			}
+			firstMarkets[a] = market;
+		}
+
+		//pick length, market and percent uniformly
+		lengthIndex = new int[numDays];
+		marketIndex = new int[numDays];
+		percentIndex = new int[numDays];
+		for(int d=0;d<numDays;d++){
+			lengthIndex[d] = rand.nextInt(numLengths);
+			marketIndex[d] = rand.nextInt(segments.length);
+			percentIndex[d] = rand.nextInt(numPercents);
+		}
+	}
+
+	/**
+	 * true if these draws were made for a game of this shape
+	 * @param numAgents
+	 * @param numDays
+	 * @param numSegments
+	 * @param numLengths
+	 * @param numPercents
+	 * @return
+	 */
+	public boolean fits(int numAgents, int numDays, int numSegments, int numLengths, int numPercents){
+		return firstMarkets.length==numAgents && lengthIndex.length==numDays && this.numSegments==numSegments
+				&& this.numLengths==numLengths && this.numPercents==numPercents;
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public int getFirstMarket(int agent){
+		return firstMarkets[agent];
+	}
+
+	public int getLengthIndex(int day){
+		return lengthIndex[day];
+	}
+
+	public int getMarketIndex(int day){
+		return marketIndex[day];
+	}
+
+	public int getPercentIndex(int day){
+		return percentIndex[day];
+	}
+
+}
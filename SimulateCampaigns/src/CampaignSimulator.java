@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -17,6 +18,7 @@ public class CampaignSimulator {
 
 
 	Random rand;
+	CampaignDraws draws; //if set, every game plays these draws instead of using rand
 	long seed;
 
 	//game parameters
@@ -32,6 +34,12 @@ public class CampaignSimulator {
 	String[] segments; //all markets that a campaign might require (F, MO, FYH, etc.)
 	String[] userTypes; //all user types (FOL, MYH, etc.)
 
+	//precomputed matching (see buildMatchTable)
+	long[] segmentMasks; //one bit per attribute character in the segment
+	long[] userTypeMasks; //one bit per attribute character in the user type
+	boolean[][] matchTable; //[segment][userType] true if the user type is in the segment
+	int[] segmentTargetSizes; //sum of the sizes of all user types in the segment
+
 
 	public CampaignSimulator(int[] lengths,String[]segments,String[] userTypes, int[] sizeUserTypes, 
 			int[] percents, int numDays, int numAgents, long seed){
@@ -50,6 +58,82 @@ public class CampaignSimulator {
 			rand = new Random(seed);
 		}
 
+		buildMatchTable();
+	}
+
+
+	/**
+	 * makes every game this simulator plays use the given draws (the same
+	 * campaign arrivals), e.g. trial t's draws shared by every grid point.
+	 * Null goes back to drawing from the seed.
+	 * @param draws
+	 */
+	public void setDraws(CampaignDraws draws){
+		this.draws = draws;
+	}
+
+	/**
+	 * draws games from rand instead of a java.util.Random of the seed,
+	 * e.g. a SplitMix64Random
+	 * @param rand
+	 */
+	public void setRandom(Random rand){
+		this.rand = rand;
+	}
+
+
+	/**
+	 * Encodes every segment and user type as a bitmask of its attribute
+	 * characters (M, F, Y, O, H, L...) and precomputes which user types
+	 * each segment matches and the total size of each segment. A user type
+	 * is in a segment when it has every attribute the segment requires, so
+	 * matching is a single AND/compare.
+	 */
+	private void buildMatchTable(){
+		HashMap<Character,Integer> attributeBits = new HashMap<Character,Integer>();
+		segmentMasks = new long[segments.length];
+		for(int s = 0;s<segments.length;s++){
+			segmentMasks[s] = attributeMask(segments[s], attributeBits);
+		}
+		userTypeMasks = new long[userTypes.length];
+		for(int ut = 0;ut<userTypes.length;ut++){
+			userTypeMasks[ut] = attributeMask(userTypes[ut], attributeBits);
+		}
+
+		matchTable = new boolean[segments.length][userTypes.length];
+		segmentTargetSizes = new int[segments.length];
+		for(int s = 0;s<segments.length;s++){
+			for(int ut = 0;ut<userTypes.length;ut++){
+				matchTable[s][ut] = (segmentMasks[s] & ~userTypeMasks[ut])==0;
+				if(matchTable[s][ut]){
+					segmentTargetSizes[s]+=sizeUserTypes[ut];
+				}
+			}
+		}
+	}
+
+	/**
+	 * builds the bitmask for a segment or user type name, assigning a new
+	 * bit to every attribute character not seen before
+	 * @param name
+	 * @param attributeBits
+	 * @return
+	 */
+	private long attributeMask(String name, HashMap<Character,Integer> attributeBits){
+		long mask = 0L;
+		for(int i = 0;i<name.length();i++){
+			Character c = name.charAt(i);
+			Integer bit = attributeBits.get(c);
+			if(bit==null){
+				if(attributeBits.size()==Long.SIZE){
+					throw new IllegalArgumentException("more than "+Long.SIZE+" distinct attributes in segments and user types");
+				}
+				bit = attributeBits.size();
+				attributeBits.put(c, bit);
+			}
+			mask |= 1L<<bit;
+		}
+		return mask;
 	}
 
 
@@ -99,19 +183,26 @@ public class CampaignSimulator {
 
 		int[] numCampaignsPerDay = new int[numDays];
 
-		HashMap<Integer,ArrayList<String>> segmentsHeld = new HashMap<Integer,ArrayList<String>>();
-		HashMap<Integer,ArrayList<Integer>> percentSegment = new HashMap<Integer,ArrayList<Integer>>();
-		HashMap<Integer,ArrayList<Integer>> numDaysCampRun = new HashMap<Integer,ArrayList<Integer>>();
+		CampaignTable campaigns = new CampaignTable(segments, numAgents+numDays);
+		DayLists campaignsHeld = new DayLists(numDays);
+		//make this game's random choices, unless it is playing shared ones
+		CampaignDraws gameDraws = draws;
+		if(gameDraws==null){
+			gameDraws = new CampaignDraws(rand, numAgents, numDays, segments, lengths.length, reachPercents.length);
+		}else if(!gameDraws.fits(numAgents, numDays, segments.length, lengths.length, reachPercents.length)){
+			throw new IllegalArgumentException("campaign draws were made for a different game setup");
+		}
+
 		//simulate the campaigns that are initially passed to the agents
-		simulateFirstCampaigns(segmentsHeld, percentSegment, numDaysCampRun,numCampaignsPerDay);
+		simulateFirstCampaigns(gameDraws, campaigns, campaignsHeld, numCampaignsPerDay);
 
 		//add a campaign for every day
 		for(int d=0;d<numDays;d++){
-			addCampaign(d,segmentsHeld, percentSegment, numDaysCampRun,numCampaignsPerDay);
+			addCampaign(d, gameDraws, campaigns, campaignsHeld, numCampaignsPerDay);
 		}
 
 		//store and return the sim. results
-		GameResult result = new GameResult(segmentsHeld, percentSegment, numDaysCampRun,numCampaignsPerDay,gameNumber);
+		GameResult result = new GameResult(campaigns, campaignsHeld, numCampaignsPerDay, userTypes, gameNumber);
 		return result;
 	}
 
@@ -126,45 +217,44 @@ public class CampaignSimulator {
 	 */
 	public void constructAllAdjacencyMatricies(GameResult result){
 		for(int d = 0;d<numDays;d++){
+			SimulationEvents.GraphBuild event = new SimulationEvents.GraphBuild();
+			event.begin();
 			constructDayAdjacencyMatrix(d, result);
+			event.end();
+			if(event.shouldCommit()){
+				int n = result.getDayNumNodes(d);
+				int edges = 0;
+				for(int i = 0;i<n;i++){
+					for(int j = 0;j<n;j++){
+						if(i!=j && result.getDayAdjacency(d, i, j)>0){
+							edges++;
+						}
+					}
+				}
+				SimulationEvents.commit(event, result.getPointName(), result.resNumber, d, n, edges);
+			}
 		}
 	}
 
 
 	/**
 	 * Constructs and adjacency matrix for a given day of a game simulation result
+	 * 
+	 * The nodes are the source, every user type, the day's campaigns (in the
+	 * order they are held) and the sink.
 	 * @param day
 	 * @param result
 	 */
 	private void constructDayAdjacencyMatrix(int day, GameResult result){
 
-		HashMap<Integer,ArrayList<String>> segmentsHeld = result.getMarketsHeld(); 
-		HashMap<Integer,ArrayList<Integer>> percentSegment = result.getPercentMarket();
-		HashMap<Integer, ArrayList<Integer>> numDaysCampRun = result.getNumDaysCampRun();
+		CampaignTable campaigns = result.getCampaigns();
+		DayLists campaignsHeld = result.getCampaignsHeld();
 
 		//calc number of nodes in the graph
-		int numNodes = userTypes.length+segmentsHeld.get(day).size()+2;
+		int numNodes = userTypes.length+campaignsHeld.size(day)+2;
 
 		//source,markets,segmentsHeld,sink
 		int[][] graph = new int[numNodes][numNodes];
-		ArrayList<String> nodes = new ArrayList<String>();
-
-		//add the source
-		nodes.add("S");
-		//add all user types to the nodes
-		for(int i = 0; i<userTypes.length;i++){
-			nodes.add(userTypes[i]+"_"+day);
-		}
-
-		//add all the active campaign segments for the day
-		for(int j=0;j<segmentsHeld.get(day).size();j++){
-			nodes.add(segmentsHeld.get(day).get(j));
-		}
-		nodes.addAll(segmentsHeld.get(day));
-
-		//add sink and add to GameResult data
-		nodes.add("T");
-		result.addNodes(day, nodes);
 
 		for(int i = 0;i<graph.length;i++){
 			for(int j = 0;j<graph[0].length;j++){
@@ -174,14 +264,15 @@ public class CampaignSimulator {
 				}
 				//type to camp
 				else if(i>0 && i<=userTypes.length && j>userTypes.length && j<graph.length-1){
-					if(isMatch(userTypes[i-1],segmentsHeld.get(day).get(j-userTypes.length-1))){
+					if(isMatch(i-1,campaigns.getSegment(campaignsHeld.get(day, j-userTypes.length-1)))){
 						graph[i][j]=Integer.MAX_VALUE; //allow as many imps as available.
 					}
 					//camp to sink
 				}else if(j==graph.length-1 && i>userTypes.length && i<graph.length-1){ 
 					//calculate the size of the campaign
-					double percent = (double)percentSegment.get(day).get(i-userTypes.length-1)/100.00;
-					int sizeTarget = getSizeTargetSegment(segmentsHeld.get(day).get(i-userTypes.length-1));
+					int row = campaignsHeld.get(day, i-userTypes.length-1);
+					double percent = (double)campaigns.getReachPercent(row)/100.00;
+					int sizeTarget = segmentTargetSizes[campaigns.getSegment(row)];
 					graph[i][j]=(int)(percent*sizeTarget);
 				}
 			}
@@ -191,215 +282,208 @@ public class CampaignSimulator {
 	}
 
 	/**
+	 * Constructs the graph of the multiday problem.
 	 * 
-	 * TODO figure out this method
-	 * Do I need to do a refactoring...can't just increment an array
+	 * The nodes are the source, a node for every user type on every day
+	 * (node 1+day*numUserTypes+userType), one node for every distinct
+	 * campaign (same segment, start and end day) and the sink. Edges are
+	 * emitted directly in row major order (the order FlowGraph.fromMatrix
+	 * would give), so building takes time proportional to the number of
+	 * edges instead of the number of node pairs.
 	 * 
 	 * @param result
 	 */
 	protected void constructMultiDayAdjacencyMatrix(GameResult result){
 
-		HashMap<Integer,ArrayList<String>> segmentsHeld = result.getMarketsHeld(); 
-		HashMap<Integer,ArrayList<Integer>> percentSegment = result.getPercentMarket();
-		HashMap<Integer,ArrayList<Integer>> numDaysCampRun = result.getNumDaysCampRun();
+		CampaignTable campaigns = result.getCampaigns();
+		DayLists campaignsHeld = result.getCampaignsHeld();
 
+		int numUserTypeNodes = numDays*userTypes.length;
 
-
-
-		ArrayList<String> nodes = new ArrayList<String>();
-
-		//add the source
-		nodes.add("S");
-		//add all user types to the nodes
-		for(int d = 0;d<numDays;d++){
-			for(int i = 0; i<userTypes.length;i++){
-				nodes.add(userTypes[i]+"_"+d);
-			}
-
-		}
+		//find the distinct campaigns, keeping the first row seen for each.
+		//the percent comes from the last row held for it (last day, last position)
+		HashMap<Long,Integer> campaignIndex = new HashMap<Long,Integer>();
+		int[] campaignOfRow = new int[campaigns.size()];
+		Arrays.fill(campaignOfRow, -1);
+		int[] firstRow = new int[campaigns.size()];
+		int[] lastRow = new int[campaigns.size()];
+		int numCampaigns = 0;
 		for(int d =0;d<numDays;d++){
-			for(String seg : segmentsHeld.get(d)){
-				if(!nodes.contains(seg)){
-					nodes.add(seg);
+			for(int i = 0;i<campaignsHeld.size(d);i++){
+				int row = campaignsHeld.get(d, i);
+				int c = campaignOfRow[row];
+				if(c==-1){
+					Long key = campaignKey(campaigns, row);
+					Integer known = campaignIndex.get(key);
+					if(known==null){
+						c = numCampaigns++;
+						campaignIndex.put(key, c);
+						firstRow[c] = row;
+					}else{
+						c = known;
+					}
+					campaignOfRow[row] = c;
 				}
+				lastRow[c] = row;
+			}
+		}
+		int[] campaignRows = Arrays.copyOf(firstRow, numCampaigns);
+
+		//source, user types, campaigns and sink
+		int firstCampNode = 1+numUserTypeNodes;
+		int numNodes = firstCampNode+numCampaigns+1;
+		int sink = numNodes-1;
+		result.addMultiDayNodes(campaignRows);
+
+		//campaign nodes running on each day, in node order
+		DayLists campaignsOnDay = new DayLists(numDays);
+		for(int c = 0;c<numCampaigns;c++){
+			for(int d = Math.max(0, campaigns.getStartDay(firstRow[c]));d<=Math.min(numDays-1, campaigns.getEndDay(firstRow[c]));d++){
+				campaignsOnDay.add(d, c);
 			}
 		}
 
-
-
-		//add sink and add to GameResult data
-		nodes.add("T");
-		result.addMultiDayNodes(nodes);
-
-		int[][] graph = new int[nodes.size()][nodes.size()];
-
-		for(int n=0;n<nodes.size();n++){
-			for(int m = 0;m<nodes.size();m++){
-				//if usertype and campaign matches...
-				if(isUserType(nodes.get(n)) && isCamp(nodes.get(m))){
-					//System.out.println(nodes.get(n)+", "+nodes.get(m));
-					//System.out.println("MATCH BOTH: "+isMatch(nodes.get(n),nodes.get(m))+", "+(getDay(nodes.get(n))>=getStartDay(nodes.get(m)))
-					//+", "+(getDay(nodes.get(n))<=getEndDay(nodes.get(m))));
-					//AND they are of overlapping types
-					if(isMatch(nodes.get(n),nodes.get(m)) && getDay(nodes.get(n))>=getStartDay(nodes.get(m)) && getDay(nodes.get(n))<=getEndDay(nodes.get(m))){
-						//System.out.println("ut to camp");
-						graph[n][m] = Integer.MAX_VALUE;
-					}
-					//camp to sink
-				}else if(isCamp(nodes.get(n)) && nodes.get(m).compareTo("T")==0){
-					//sizeUT*( de-ds)*perc
-					int campNum = 0;
-					int campDay = 0;
-					for(int c=0;c<segmentsHeld.size();c++){
-						for(int sh=0;sh<segmentsHeld.get(c).size();sh++){
-							if(segmentsHeld.get(c).get(sh).compareTo(nodes.get(n))==0){
-								campNum = sh;
-								campDay = c;
-							}
-						}
+		//count the edges so they can go straight into arrays
+		int numEdges = 0;
+		for(int ut = 0;ut<userTypes.length;ut++){
+			if(sourceCapacity(ut)>0){
+				numEdges+=numDays;
+			}
+		}
+		for(int d = 0;d<numDays;d++){
+			for(int i = 0;i<campaignsOnDay.size(d);i++){
+				int seg = campaigns.getSegment(firstRow[campaignsOnDay.get(d, i)]);
+				for(int ut = 0;ut<userTypes.length;ut++){
+					if(isMatch(ut,seg)){
+						numEdges++;
 					}
-					double percent = percentSegment.get(campDay).get(campNum)/100.00;
-					int sizeTarget = (int) (getSizeTargetSegment(segmentsHeld.get(campDay).get(campNum))*1.423);
-					int numDays = Integer.parseInt(nodes.get(n).split("_")[2])-Integer.parseInt(nodes.get(n).split("_")[1])+1;
-					//System.out.println(nodes.get(n)+" perc: "+percent+" size: "+sizeTarget+" days: "+numDays);
-					//System.out.println("camp to T: "+((int) (sizeTarget*(Integer.parseInt(nodes.get(n).split("_")[2])-Integer.parseInt(nodes.get(n).split("_")[1]))
-					//*percent)));
-					graph[n][m]= (int) (sizeTarget*numDays*percent);
-					//source to userType
-				}else if(nodes.get(n).compareTo("S")==0 && isUserType(nodes.get(m))){
-					for(int ut =0;ut<userTypes.length;ut++){
-						if(userTypes[ut].compareTo(nodes.get(m).split("_")[0])==0){
-							//System.out.println("n: "+n);
-							//System.out.println("m: "+m);
-							//System.out.println("S to UT: "+(sizeUserTypes[ut]*1.423));
-							graph[n][m]=(int) (sizeUserTypes[ut]*1.423);
-						}
+				}
+			}
+		}
+		int[] sinkCapacity = new int[numCampaigns];
+		for(int c = 0;c<numCampaigns;c++){
+			//sizeUT*( de-ds)*perc
+			int campRow = lastRow[c];
+			double percent = campaigns.getReachPercent(campRow)/100.00;
+			int sizeTarget = (int) (segmentTargetSizes[campaigns.getSegment(campRow)]*1.423);
+			int numDays = campaigns.getEndDay(campRow)-campaigns.getStartDay(campRow)+1;
+			sinkCapacity[c] = (int) (sizeTarget*numDays*percent);
+			if(sinkCapacity[c]>0){
+				numEdges++;
+			}
+		}
 
+		int[] from = new int[numEdges];
+		int[] to = new int[numEdges];
+		int[] cap = new int[numEdges];
+		int e = 0;
+		//source to userType
+		for(int d = 0;d<numDays;d++){
+			for(int ut = 0;ut<userTypes.length;ut++){
+				if(sourceCapacity(ut)>0){
+					from[e] = 0;
+					to[e] = 1+d*userTypes.length+ut;
+					cap[e] = sourceCapacity(ut);
+					e++;
+				}
+			}
+		}
+		//usertype to every matching campaign running that day
+		for(int d = 0;d<numDays;d++){
+			for(int ut = 0;ut<userTypes.length;ut++){
+				for(int i = 0;i<campaignsOnDay.size(d);i++){
+					int c = campaignsOnDay.get(d, i);
+					if(isMatch(ut,campaigns.getSegment(firstRow[c]))){
+						from[e] = 1+d*userTypes.length+ut;
+						to[e] = firstCampNode+c;
+						cap[e] = Integer.MAX_VALUE;
+						e++;
 					}
-
 				}
 			}
 		}
-
-
-
-		result.addMultiDayAdjacencyMatrix(graph);
-
-	}
-
-	private boolean isCamp(String n) {
-		String[] parts =n.split("_");
-		if(parts.length ==3){
-			return true;
+		//camp to sink
+		for(int c = 0;c<numCampaigns;c++){
+			if(sinkCapacity[c]>0){
+				from[e] = firstCampNode+c;
+				to[e] = sink;
+				cap[e] = sinkCapacity[c];
+				e++;
+			}
 		}
-		return false;
-	}
 
+		result.addMultiDayGraph(new FlowGraph(numNodes, from, to, cap));
 
-	private int getEndDay(String node) {
-		String[] parts =node.split("_");
-
-		return Integer.parseInt(parts[2]);
 	}
 
-
-	private int getStartDay(String node) {
-		String[] parts =node.split("_");
-
-		return Integer.parseInt(parts[1]);
-	}
-
-
-	private int getDay(String node) {
-		String[] parts =node.split("_");
-		return Integer.parseInt(parts[1]);
+	/**
+	 * packs a campaign's segment, start and end day into one hash key
+	 * @param campaigns
+	 * @param row
+	 * @return
+	 */
+	private static Long campaignKey(CampaignTable campaigns, int row){
+		return ((long)campaigns.getSegment(row)<<42) | ((long)campaigns.getStartDay(row)<<21) | campaigns.getEndDay(row);
 	}
 
-
-	private boolean isUserType(String node) {
-		String[] parts =node.split("_");
-		if(parts.length==2){
-			return true;
-		}
-		return false;
+	/**
+	 * capacity of the edge from the source to a user type's node on any day
+	 * @param ut
+	 * @return
+	 */
+	private int sourceCapacity(int ut){
+		return (int) (sizeUserTypes[ut]*1.423);
 	}
 
-
 	/**
 	 * Returns the sum of the sizes of all user types that match a
-	 *  campaign segment campSeg
-	 * @param campSeg
+	 *  campaign segment seg
+	 * @param seg
 	 * @return
 	 */
-	private int getSizeTargetSegment(String mktSeg) {
-		int total = 0;
-		for(int ut = 0; ut<userTypes.length;ut++){
-			if(isMatch(userTypes[ut], mktSeg)){
-				total+=sizeUserTypes[ut];
-			}
-		}
-		return total;
+	protected int getSizeTargetSegment(int seg) {
+		return segmentTargetSizes[seg];
 	}
 
 	/**
-	 * Returns true if a campaign's market segment( mktSeg) matches a userType
-	 * @param userType
-	 * @param mktSeg
+	 * Returns true if user type ut is in segment seg
+	 * @param ut
+	 * @param seg
 	 * @return
 	 */
-	private boolean isMatch(String userType, String mktSeg){
-		String[] mktSegArray=mktSeg.split("_");
-		//System.out.println("MS: "+mktSegArray[0]);
-		//System.out.println("UT: "+userType);
-		for(char c : mktSegArray[0].toCharArray()){
-			boolean match = false;
-			for(char m : userType.toCharArray()){
-				if(m==c){
-					match = true;
-				}
-			}
-			/*
-			 * if the market segment requires a user characteristic not in the user type,
-			 * return false
-			 */
-			if(!match){
-				return false;
-			}
-		}
-
-		return true;
+	protected boolean isMatch(int ut, int seg){
+		return matchTable[seg][ut];
 	}
 
 
 	/**
 	 * adds a campaign for a day
 	 * @param day
-	 * @param segmentsHeld
-	 * @param percentSegment
-	 * @param numDaysCampRun 
+	 * @param draws
+	 * @param campaigns
+	 * @param campaignsHeld
 	 * @param numCampaignsPerDay
 	 */
-	public void addCampaign(int day,HashMap<Integer,ArrayList<String>> segmentsHeld, 
-			HashMap<Integer,ArrayList<Integer>> percentSegment, HashMap<Integer, ArrayList<Integer>> numDaysCampRun, int[] numCampaignsPerDay){
+	public void addCampaign(int day, CampaignDraws draws, CampaignTable campaigns, DayLists campaignsHeld,
+			int[] numCampaignsPerDay){
+
+		//length, market and percent picked uniformly
+		int length = draws.getLengthIndex(day);
+		int market = draws.getMarketIndex(day);
+		int percent = draws.getPercentIndex(day);
 
-		//pick length, market and percent uniformly
-		int length = rand.nextInt(lengths.length);
-		int market = rand.nextInt(segments.length);
-		int percent = rand.nextInt(reachPercents.length); 
+		//campaigns that would start after the game ends are never held
+		if(day+2>=numDays){
+			return;
+		}
+		int row = campaigns.add(market, day+2, Math.min(day+2+lengths[length]-1,numDays-1), 
+				reachPercents[percent], lengths[length]);
 
-		//for every day the campaign is running, add to the count, segment and percent
+		//for every day the campaign is running, add to the count and the campaigns held
 		for(int c=day+2;c<(day+2+lengths[length]);c++){
-			//handles first campaign on a day case
-			if(!segmentsHeld.containsKey(c) && c<numDays){
-				segmentsHeld.put(c, new ArrayList<String>());
-				percentSegment.put(c, new ArrayList<Integer>());
-				numDaysCampRun.put(c, new ArrayList<Integer>());
-			}
 			if(c<numDays){
 				numCampaignsPerDay[c]=numCampaignsPerDay[c]+1;
-				numDaysCampRun.get(c).add(lengths[length]);
-				segmentsHeld.get(c).add(segments[market]+"_"+(day+2)+"_"+(Math.min(day+2+lengths[length]-1,numDays-1)));
-				percentSegment.get(c).add(reachPercents[percent]);
+				campaignsHeld.add(c, row);
 			}
 		}
 	}
@@ -407,39 +491,26 @@ public class CampaignSimulator {
 
 	/**
 	 * runs the slightly different process of adding the first day's campaigns
-	 * @param segmentsHeld
-	 * @param percentSegment
+	 * @param draws
+	 * @param campaigns
+	 * @param campaignsHeld
 	 * @param numCampaignsPerDay
 	 */
-	public void simulateFirstCampaigns(HashMap<Integer,ArrayList<String>> segmentsHeld, 
-			HashMap<Integer,ArrayList<Integer>> percentSegment, HashMap<Integer,ArrayList<Integer>> numDaysCampRun, int[] numCampaignsPerDay){
+	public void simulateFirstCampaigns(CampaignDraws draws, CampaignTable campaigns, DayLists campaignsHeld,
+			int[] numCampaignsPerDay){
 		for(int a=1;a<=numAgents;a++){
-			//pick  of campaign, market (F,MY,FYL..), percent goal uniformly at random
+			//middle length and percent, market (MY,FL..) picked at random
 			int length = (int)Math.ceil((lengths.length-1)/2);
-			int market = rand.nextInt(segments.length);
-			String mkt = segments[market];
-			int count = 1;
-			while(mkt.toCharArray().length!=2 || count>=15){
-				market = rand.nextInt(segments.length);
-				mkt = segments[market];
-				count++;
-			}
+			int market = draws.getFirstMarket(a-1);
 			int percent = (int)Math.ceil((reachPercents.length-1)/2);
+			int row = campaigns.add(market, 0, lengths[length]-1, reachPercents[percent], lengths[length]);
 
 			//for all days the campaign will occur...
 			for(int j=0;j<lengths[length];j++){
-				//if this is the first for a day, make new list
-				if(!segmentsHeld.containsKey(j)){
-					segmentsHeld.put(j, new ArrayList<String>());
-					percentSegment.put(j, new ArrayList<Integer>());
-					numDaysCampRun.put(j, new ArrayList<Integer>());
-				}
 				//add the chosen market
 				if(j<lengths[lengths.length-1]){
 					numCampaignsPerDay[j]=numCampaignsPerDay[j]+1;
-					segmentsHeld.get(j).add(segments[market]+"_0_"+(lengths[length]-1));
-					numDaysCampRun.get(j).add(lengths[length]);
-					percentSegment.get(j).add(reachPercents[percent]);
+					campaignsHeld.add(j, row);
 				}
 			}
 		}
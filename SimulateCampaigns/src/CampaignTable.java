@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * CampaignTable stores every campaign of a game as one row of parallel
+ * int arrays: segment id, start day, end day, reach percent and length.
+ * Campaigns used to be passed around as "SEG_start_end" strings that were
+ * split and parsed again wherever they were read; now the simulator, graph
+ * builders and stats all read the columns, and the string label is only
+ * made when a result is written out.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class CampaignTable {
+
+	private String[] segmentNames; //used for labels only
+
+	private int size;
+	private int[] segment; //index into segmentNames
+	private int[] startDay; //first day the campaign runs
+	private int[] endDay; //last day the campaign runs (cut off at the end of the game)
+	private int[] reachPercent; //percent of the segment the campaign wants to reach
+	private int[] length; //length the campaign was drawn with
+
+
+	public CampaignTable(String[] segmentNames){
+		this(segmentNames, 16);
+	}
+
+	public CampaignTable(String[] segmentNames, int initialCapacity){
+		this.segmentNames = segmentNames;
+		initialCapacity = Math.max(1, initialCapacity);
+		segment = new int[initialCapacity];
+		startDay = new int[initialCapacity];
+		endDay = new int[initialCapacity];
+		reachPercent = new int[initialCapacity];
+		length = new int[initialCapacity];
+	}
+
+
+	/**
+	 * adds a campaign and returns its row
+	 * @param seg
+	 * @param start
+	 * @param end
+	 * @param percent
+	 * @param len
+	 * @return
+	 */
+	public int add(int seg, int start, int end, int percent, int len){
+		if(size==segment.length){
+			int capacity = size*2;
+			segment = Arrays.copyOf(segment, capacity);
+			startDay = Arrays.copyOf(startDay, capacity);
+			endDay = Arrays.copyOf(endDay, capacity);
+			reachPercent = Arrays.copyOf(reachPercent, capacity);
+			length = Arrays.copyOf(length, capacity);
+		}
+		segment[size] = seg;
+		startDay[size] = start;
+		endDay[size] = end;
+		reachPercent[size] = percent;
+		length[size] = len;
+		return size++;
+	}
+
+	/**
+	 * true if two rows have the same segment and run over the same days
+	 * (they would have had the same SEG_start_end label)
+	 * @param row
+	 * @param other
+	 * @return
+	 */
+	public boolean sameCampaign(int row, int other){
+		return segment[row]==segment[other] && startDay[row]==startDay[other] && endDay[row]==endDay[other];
+	}
+
+	/**
+	 * the human-readable SEG_start_end label of a row, for output files
+	 * @param row
+	 * @return
+	 */
+	public String getLabel(int row){
+		return segmentNames[segment[row]]+"_"+startDay[row]+"_"+endDay[row];
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public int size(){
+		return size;
+	}
+
+	public int getSegment(int row){
+		return segment[row];
+	}
+
+	public int getStartDay(int row){
+		return startDay[row];
+	}
+
+	public int getEndDay(int row){
+		return endDay[row];
+	}
+
+	public int getReachPercent(int row){
+		return reachPercent[row];
+	}
+
+	public int getLength(int row){
+		return length[row];
+	}
+
+	public String[] getSegmentNames(){
+		return segmentNames;
+	}
+
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * DayLists holds a list of ints for every day of a game (the campaign rows
+ * running that day) without boxing. Values are added as (day, value) pairs
+ * in any day order, then laid out CSR-style: the values of day d are
+ * values[start[d]] .. values[start[d+1]-1], in the order they were added.
+ *
+ * The layout is built on the first read, after which no more values can
+ * be added.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class DayLists {
+
+	private int numDays;
+	private int[] start; //offsets into values, null until built
+	private int[] values;
+
+	//(day, value) pairs added since construction
+	private int[] pendingDays;
+	private int[] pendingValues;
+	private int numPending;
+
+
+	public DayLists(int numDays){
+		this(numDays, Math.max(16, numDays));
+	}
+
+	public DayLists(int numDays, int initialCapacity){
+		this.numDays = numDays;
+		pendingDays = new int[Math.max(1, initialCapacity)];
+		pendingValues = new int[pendingDays.length];
+	}
+
+
+	/**
+	 * appends a value to a day's list
+	 * @param day
+	 * @param value
+	 */
+	public void add(int day, int value){
+		if(start!=null){
+			throw new IllegalStateException("DayLists can't be added to once read");
+		}
+		if(day<0 || day>=numDays){
+			throw new IndexOutOfBoundsException("day "+day+" of "+numDays);
+		}
+		if(numPending==pendingDays.length){
+			pendingDays = Arrays.copyOf(pendingDays, numPending*2);
+			pendingValues = Arrays.copyOf(pendingValues, numPending*2);
+		}
+		pendingDays[numPending] = day;
+		pendingValues[numPending] = value;
+		numPending++;
+	}
+
+	/**
+	 * stable counting sort of the pending pairs by day
+	 */
+	private void build(){
+		start = new int[numDays+1];
+		for(int p = 0;p<numPending;p++){
+			start[pendingDays[p]+1]++;
+		}
+		for(int d = 0;d<numDays;d++){
+			start[d+1]+=start[d];
+		}
+		values = new int[numPending];
+		int[] next = Arrays.copyOf(start, numDays);
+		for(int p = 0;p<numPending;p++){
+			values[next[pendingDays[p]]++] = pendingValues[p];
+		}
+		pendingDays = null;
+		pendingValues = null;
+	}
+
+
+	/**
+	 * number of values held on a day
+	 * @param day
+	 * @return
+	 */
+	public int size(int day){
+		if(start==null){
+			build();
+		}
+		return start[day+1]-start[day];
+	}
+
+	/**
+	 * the i-th value held on a day
+	 * @param day
+	 * @param i
+	 * @return
+	 */
+	public int get(int day, int i){
+		if(start==null){
+			build();
+		}
+		return values[start[day]+i];
+	}
+
+	public int getNumDays(){
+		return numDays;
+	}
+
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * DayMatrices holds one square int matrix per day (adjacency, flow or
+ * unused flow) in a single flat buffer instead of a map of int[][]s.
+ * Day d's n x n matrix is stored row by row starting at offset[d].
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class DayMatrices {
+
+	private int[] offset; //start of each day's cells, -1 if not stored
+	private int[] numNodes; //side of each day's matrix
+	private int[] cells;
+	private int used;
+
+
+	public DayMatrices(int numDays){
+		offset = new int[numDays];
+		Arrays.fill(offset, -1);
+		numNodes = new int[numDays];
+		cells = new int[0];
+	}
+
+
+	/**
+	 * reserves room for a day's n x n matrix (all zeros) and returns its
+	 * offset. A day that was already stored with the same size is reused.
+	 * @param day
+	 * @param n
+	 * @return
+	 */
+	public int allocate(int day, int n){
+		if(offset[day]!=-1 && numNodes[day]==n){
+			Arrays.fill(cells, offset[day], offset[day]+n*n, 0);
+			return offset[day];
+		}
+		if(used+n*n>cells.length){
+			cells = Arrays.copyOf(cells, Math.max(used+n*n, cells.length*2));
+		}
+		offset[day] = used;
+		numNodes[day] = n;
+		used+=n*n;
+		return offset[day];
+	}
+
+	/**
+	 * copies a matrix in as a day's matrix
+	 * @param day
+	 * @param matrix
+	 */
+	public void put(int day, int[][] matrix){
+		int n = matrix.length;
+		int base = allocate(day, n);
+		for(int i = 0;i<n;i++){
+			System.arraycopy(matrix[i], 0, cells, base+i*n, n);
+		}
+	}
+
+	public boolean has(int day){
+		return day>=0 && day<offset.length && offset[day]!=-1;
+	}
+
+	public int get(int day, int i, int j){
+		return cells[offset[day]+i*numNodes[day]+j];
+	}
+
+	public void set(int day, int i, int j, int value){
+		cells[offset[day]+i*numNodes[day]+j] = value;
+	}
+
+	/**
+	 * side of a day's matrix
+	 * @param day
+	 * @return
+	 */
+	public int getNumNodes(int day){
+		return numNodes[day];
+	}
+
+	/**
+	 * copies a day's matrix out, or returns null if it isn't stored
+	 * @param day
+	 * @return
+	 */
+	public int[][] toMatrix(int day){
+		if(!has(day)){
+			return null;
+		}
+		int n = numNodes[day];
+		int[][] matrix = new int[n][n];
+		for(int i = 0;i<n;i++){
+			System.arraycopy(cells, offset[day]+i*n, matrix[i], 0, n);
+		}
+		return matrix;
+	}
+
+	/**
+	 * the flat buffer and a day's offset in it, for code that reads a whole
+	 * matrix at once. The buffer can be replaced when another day is added.
+	 * @return
+	 */
+	public int[] getCells(){
+		return cells;
+	}
+
+	public int getOffset(int day){
+		return offset[day];
+	}
+
+	public int getNumDays(){
+		return offset.length;
+	}
+
+}
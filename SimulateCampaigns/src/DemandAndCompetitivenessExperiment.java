@@ -1,8 +1,16 @@
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -21,6 +29,38 @@ public class DemandAndCompetitivenessExperiment {
 
 	boolean calcDailyFlows = true;
 
+	//max flow engine, AUTO picks one per graph from its node/edge counts
+	MaxFlowSolvers.Engine solverEngine = MaxFlowSolvers.Engine.AUTO;
+	//merge equivalent user type/campaign nodes before the multiday max flow
+	boolean contractGraphs = false;
+	//carry daily flows from one day to the next instead of solving each day from scratch
+	boolean incrementalDailyFlows = false;
+	//number of trials run at once, 1 runs them one after another
+	int numThreads = 1;
+	//if set, trial t's multiday graph is solved starting from trialSolvers[t-1]'s last solve, and
+	//the solver that did it takes that place once the trial is kept (see ParameterSweep's warm start)
+	WarmStartMaxFlow[] trialSolvers;
+	//if set, trial t plays trialDraws[t-1] (common random numbers across grid points)
+	CampaignDraws[] trialDraws;
+	//if set, output files are written on its thread instead of the one running the trial
+	ResultWriter resultWriter;
+	//if set, trials whose stats are cached aren't run again (their output files aren't rewritten)
+	ResultCache resultCache;
+	//time every phase of every trial (see PhaseMetrics), added up in pointMetrics
+	boolean collectMetrics = false;
+	PhaseMetrics pointMetrics = new PhaseMetrics();
+	//work each trial's seed out from the seed, point and trial number (see SplitMix64Random)
+	//and draw its game from a SplitMix64Random, instead of chaining java.util.Randoms
+	boolean splittableRandom = false;
+	//release each trial's graphs and flows as soon as its stats are taken and its files printed
+	boolean ephemeralResults = false;
+	//write each trial's multiday matrices as one sparse binary file instead of dense csvs
+	boolean binaryOutput = false;
+	//if above 0, stop once every 95% confidence interval is within this fraction of its mean
+	//(numTrials is then the most trials run), but never before minTrials
+	double targetPrecision = 0.0;
+	int minTrials = 1;
+
 
 	//these could be read from a file?
 	int numDays = 60;
@@ -45,11 +85,17 @@ public class DemandAndCompetitivenessExperiment {
 
 
 	//these stats should be reset before running a new experiment
+	int trialsRun = 0; //trials added to the stats, numTrials unless the target precision stopped early
 	double avgNumCampaignsPerDay = 0.0;
 	int numUnderMet = 0;
 	double totalPercentUnmet = 0.0;
 	int totalShort = 0;
 	int totalDemanded = 0;
+	//spread of the reported values, one value per trial (per campaign under met for percentUnmetStat)
+	RunningStat campaignsPerDayStat = new RunningStat();
+	RunningStat underMetStat = new RunningStat();
+	RunningStat percentUnmetStat = new RunningStat();
+	RunningStat experienceCompStat = new RunningStat();
 
 
 	public DemandAndCompetitivenessExperiment(String name, String baseFolder, int numTrials, long seed, boolean calcDailyFlows){
@@ -74,37 +120,104 @@ public class DemandAndCompetitivenessExperiment {
 	 * @param result
 	 */
 	public void collectAndOutputStats(GameResult result){
+		TrialStats stats = collectStats(result);
 		//prints this result's values and matrices
-		result.printGameResult(baseFolder+"/"+experParamName);
-		avgNumCampaignsPerDay+=result.getAverageNumCampaigns();
-		int[] numCampShort = new int[numDays];
-		int[] sizeOfCamp = new int[numDays];
-		//itterate through the calculated unused flow matrices and add values to stats
-		for(int a=0;a<result.getMultiDayUnsuedFlow().length;a++){
-			for(int b=0;b<result.getMultiDayUnsuedFlow()[0].length;b++){
-				//if going into the sink, add total available weight to total Demanded
-				if(b==result.getMultiDayUnsuedFlow()[0].length-1){
-					totalDemanded+=result.getMultiDayAdjacencyMatrix()[a][b];
-				}
-				//if there is unused flow and it is going from the source or to the sink, add to stats
-				if(result.getMultiDayUnsuedFlow()[a][b]>0 && 
-						(a==0 || b==result.getMultiDayUnsuedFlow()[0].length-1)){
-					//add source to user type stats here int he future??
-
-					//System.out.println(result.getMultiDayNodes().get(a)+" to "+result.getMultiDayNodes().get(b)+": "+result.getMultiDayUnsuedFlow()[a][b]);
-					//we are only carring about campaign to sink stats at the moment
-					if(a!=0){
-						numUnderMet+=1; //count number that didn't meet reach
-						int day = Integer.parseInt(result.getMultiDayNodes().get(a).split("_")[1]);
-						numCampShort[day]=result.getMultiDayUnsuedFlow()[a][b]; //get number under camp
-						sizeOfCamp[day]=result.getMultiDayAdjacencyMatrix()[a][b]; //get number available
-						totalPercentUnmet+=(double)numCampShort[day]/(double)sizeOfCamp[day]; //calc the percent unmet and add to total
-						totalShort+=numCampShort[day]; //add to the total short
-						//System.out.println("TPU: "+totalPercentUnmet);
-					}
-				}
+		printResult(result);
+		addStats(stats);
+	}
+
+	/**
+	 * prints a result's files, or queues them on the result writer if there
+	 * is one. With ephemeral results the result is released once printed.
+	 * @param result
+	 */
+	private void printResult(GameResult result){
+		if(resultWriter!=null){
+			resultWriter.printResult(result, baseFolder+"/"+experParamName, binaryOutput, ephemeralResults);
+			return;
+		}
+		result.printGameResult(baseFolder+"/"+experParamName, binaryOutput);
+		if(ephemeralResults){
+			result.release();
+		}
+	}
+
+	/**
+	 * collectStats works out what a GameResult adds to the experiment's
+	 * stats without touching them, so trials can run at the same time
+	 * 
+	 * @param result
+	 * @return
+	 */
+	public TrialStats collectStats(GameResult result){
+		TrialStats stats = new TrialStats();
+		stats.avgNumCampaigns = result.getAverageNumCampaigns();
+		//itterate through the edges into the sink and add values to stats
+		int[] demanded = result.getMultiDaySinkCapacities();
+		int[] unmet = result.getMultiDaySinkUnusedFlow();
+		for(int a=0;a<demanded.length;a++){
+			//add total available weight to total Demanded
+			stats.totalDemanded+=demanded[a];
+			//if there is unused flow going to the sink, add to stats
+			//(source to user type stats could go here in the future)
+			if(unmet[a]>0){
+				//System.out.println(result.getMultiDayNodes().get(a)+": "+unmet[a]);
+				stats.addUnderMet(unmet[a], demanded[a]); //number under camp and number available
 			}
 		}
+		return stats;
+	}
+
+	/**
+	 * adds one trial's stats to the experiment's stats. Trials have to be
+	 * added in trial order for the totals to come out the same every run.
+	 * 
+	 * @param stats
+	 */
+	public synchronized void addStats(TrialStats stats){
+		trialsRun++;
+		avgNumCampaignsPerDay+=stats.getAvgNumCampaigns();
+		totalDemanded+=stats.getTotalDemanded();
+		numUnderMet+=stats.getNumUnderMet(); //count number that didn't meet reach
+		for(int i = 0;i<stats.getNumUnderMet();i++){
+			totalPercentUnmet+=stats.getPercentUnmet(i); //add the percent unmet to total
+			percentUnmetStat.add(stats.getPercentUnmet(i));
+		}
+		totalShort+=stats.getTotalShort(); //add to the total short
+		if(stats.metrics!=null){
+			pointMetrics.merge(stats.metrics);
+		}
+
+		campaignsPerDayStat.add(stats.getAvgNumCampaigns());
+		underMetStat.add(stats.getNumUnderMet());
+		if(stats.getTotalDemanded()>0){
+			experienceCompStat.add((double)stats.getTotalShort()/(double)stats.getTotalDemanded());
+		}
+	}
+
+	/**
+	 * true once a target precision is set, at least minTrials trials are in
+	 * and the confidence intervals of the num unable to meet, percent unmet
+	 * and experienced competition are all narrow enough. Experienced
+	 * competition goes by the spread of each trial's short/demanded.
+	 * @return
+	 */
+	public synchronized boolean reachedPrecision(){
+		if(targetPrecision<=0 || trialsRun<minTrials){
+			return false;
+		}
+		return isPrecise(underMetStat) && isPrecise(percentUnmetStat) && isPrecise(experienceCompStat);
+	}
+
+	private boolean isPrecise(RunningStat stat){
+		if(stat.getCount()==0){
+			//e.g. no campaign has been under met, nothing to average
+			return true;
+		}
+		if(stat.getCount()<2){
+			return false;
+		}
+		return stat.getConfidenceHalfWidth()<=targetPrecision*Math.abs(stat.getMean());
 	}
 
 	/**
@@ -113,9 +226,172 @@ public class DemandAndCompetitivenessExperiment {
 	 * @param lengths array with all length options
 	 */
 	public void runExperiment(int[] percents,int[] lengths){
+		//draw every trial's seed up front so the trials don't depend on which thread runs them
+		long[] trialSeeds = new long[numTrials];
+		if(splittableRandom){
+			long streamSeed = seed!=-1 ? seed : random.nextLong();
+			long pointKey = SplitMix64Random.pointKey(lengths, percents);
+			for(int t = 0;t<numTrials;t++){
+				trialSeeds[t] = SplitMix64Random.trialSeed(streamSeed, pointKey, t+1);
+			}
+		}else{
+			for(int t = 0;t<numTrials;t++){
+				trialSeeds[t] = random.nextLong();
+			}
+		}
+		runExperiment(percents, lengths, trialSeeds);
+	}
+
+	/**
+	 * runs only trial t, with the given seed, and adds it to the stats, e.g.
+	 * to look at one trial of a sweep again (see ParameterSweep.replayTrial)
+	 * @param percents
+	 * @param lengths
+	 * @param t trial number
+	 * @param trialSeed
+	 * @return the trial's stats
+	 */
+	public TrialStats runSingleTrial(int[] percents, int[] lengths, int t, long trialSeed){
+		setParamName(percents, lengths);
+		TrialStats stats = runTrial(t, trialSeed, percents, lengths);
+		keepTrial(t, stats);
+		return stats;
+	}
+
+	/**
+	 * runs the experiment with the given seed for each trial instead of
+	 * drawing them from this experiment's random
+	 * @param percents array with all percents options
+	 * @param lengths array with all length options
+	 * @param trialSeeds one seed per trial
+	 */
+	public void runExperiment(int[] percents,int[] lengths,long[] trialSeeds){
+
 
 
+		setParamName(percents, lengths);
 
+		if(numThreads<=1){
+			//run numTrials trials
+			for(int t = 1;t<=numTrials;t++){
+				keepTrial(t, runTrial(t, trialSeeds[t-1], percents, lengths));
+				if(reachedPrecision()){
+					break;
+				}
+			}
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, numTrials));
+		ArrayDeque<Future<TrialStats>> trials = new ArrayDeque<Future<TrialStats>>();
+		try {
+			//only a few trials ahead of the next one to add are in flight, so
+			//memory doesn't grow with numTrials
+			int window = 2*numThreads;
+			int next = 1;
+			for(int t = 1;t<=numTrials;t++){
+				while(next<=numTrials && next<t+window){
+					trials.add(submitTrial(pool, next, trialSeeds[next-1], percents, lengths));
+					next++;
+				}
+				//add the stats in trial order, whichever trial finishes first, so
+				//where the target precision stops doesn't depend on the threads
+				keepTrial(t, trials.poll().get());
+				if(reachedPrecision()){
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			//trials started past where the stats stopped are dropped unwritten,
+			//and have stopped before the next point starts
+			for(Future<TrialStats> future : trials){
+				future.cancel(true);
+			}
+			pool.shutdownNow();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * writes a finished trial's files, caches its stats and adds them to the
+	 * experiment's. Only trials that are kept get here, so the output folder
+	 * holds exactly the trials counted in the results. A trial interrupted
+	 * on this thread (runTrial gave no stats) stops the experiment, the same
+	 * way an interrupt does while waiting on the pool. A warm started
+	 * trial's solver only becomes the one trial t starts from at the next
+	 * point here, so trials that are dropped don't change the chain.
+	 * @param t trial number
+	 * @param stats
+	 */
+	private void keepTrial(int t, TrialStats stats){
+		if(stats==null){
+			throw new RuntimeException(new InterruptedException("interrupted while running a trial"));
+		}
+		if(stats.solver!=null){
+			trialSolvers[t-1] = stats.solver;
+			stats.solver = null;
+		}
+		if(stats.result!=null){
+			if(stats.metrics!=null){
+				stats.metrics.begin(PhaseMetrics.Phase.OUTPUT);
+			}
+			printResult(stats.result);
+			if(stats.metrics!=null){
+				stats.metrics.end();
+			}
+			stats.result = null;
+		}
+		if(stats.cacheKey!=null){
+			resultCache.put(stats.cacheKey, stats);
+			stats.cacheKey = null;
+		}
+		addStats(stats);
+	}
+
+	/**
+	 * true if the trial running on this thread was cancelled
+	 * @return
+	 */
+	private boolean cancelled(){
+		return Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * starts a trial on the pool with its own copies of the parameters
+	 * @param pool
+	 * @param t
+	 * @param trialSeed
+	 * @param percents
+	 * @param lengths
+	 * @return
+	 */
+	private Future<TrialStats> submitTrial(ExecutorService pool, final int t, final long trialSeed, int[] percents, int[] lengths){
+		final int[] trialPercents = percents.clone();
+		final int[] trialLengths = lengths.clone();
+		return pool.submit(new Callable<TrialStats>() {
+			public TrialStats call() {
+				return runTrial(t, trialSeed, trialPercents, trialLengths);
+			}
+		});
+	}
+
+	/**
+	 * sets the name this experiment's output folder goes under from its
+	 * parameters and number of trials
+	 * @param percents
+	 * @param lengths
+	 */
+	public void setParamName(int[] percents,int[] lengths){
 		experParamName = experimentName+"/";
 		//construct filename
 		if(numTrials>1){
@@ -124,61 +400,173 @@ public class DemandAndCompetitivenessExperiment {
 			experParamName = experParamName+"Single";
 		}
 		experParamName=experParamName+"_Lengths_"+lengths[0]+"_"+lengths[1]+"_"+lengths[2]+"_Percents_"+percents[0]+"_"+percents[1]+"_"+percents[2];
+	}
 
-		//run numTrials trials
-		for(int t = 1;t<=numTrials;t++){
-			long newSeed = random.nextLong();
-			//construct and run a trial
-			DemandAndCompetitivenessTrial trial = new DemandAndCompetitivenessTrial(lengths, segments, userTypes, sizeUserTypes, 
-					percents, numDays, numAgents,newSeed);
+	/**
+	 * the raw stats (not averages) of this experiment as one csv line:
+	 * trialsRun,avgNumCampaignsPerDay,numUnderMet,totalPercentUnmet,totalShort,totalDemanded,
+	 * then the campaigns per day, under met, percent unmet and experienced competition
+	 * RunningStats as count;mean;m2
+	 * Experiments run in different processes can be added back together
+	 * with addStatsLine.
+	 * @return
+	 */
+	public String getStatsLine(){
+		return trialsRun+","+avgNumCampaignsPerDay+","+numUnderMet+","+totalPercentUnmet+","+totalShort+","+totalDemanded
+				+","+campaignsPerDayStat+","+underMetStat+","+percentUnmetStat+","+experienceCompStat;
+	}
 
-			//run trial t
-			GameResult result = trial.runExperiment(t);
+	/**
+	 * adds the raw stats written by getStatsLine, and their trials, to this
+	 * experiment's. Doubles are written so they read back exactly. numTrials
+	 * (used in the output folder name) isn't changed.
+	 * @param line
+	 */
+	public synchronized void addStatsLine(String line){
+		String[] values = line.split(",");
+		if(values.length!=10){
+			throw new IllegalArgumentException("not a stats line: "+line);
+		}
+		trialsRun+=Integer.parseInt(values[0]);
+		avgNumCampaignsPerDay+=Double.parseDouble(values[1]);
+		numUnderMet+=Integer.parseInt(values[2]);
+		totalPercentUnmet+=Double.parseDouble(values[3]);
+		totalShort+=Integer.parseInt(values[4]);
+		totalDemanded+=Integer.parseInt(values[5]);
+		campaignsPerDayStat.merge(RunningStat.parse(values[6]));
+		underMetStat.merge(RunningStat.parse(values[7]));
+		percentUnmetStat.merge(RunningStat.parse(values[8]));
+		experienceCompStat.merge(RunningStat.parse(values[9]));
+	}
 
-			//if requested, run the max flow algorithm on every day of every trial
-			//these will only be printed if they are run
-			if(calcDailyFlows){
-				trial.calculateAllMaxFlows();
+	/**
+	 * simulates and solves one trial and returns its stats, holding on to
+	 * its result until keepTrial writes it. Doesn't touch the experiment's
+	 * stats or output, so any number of trials can run at once. Stats found
+	 * in the result cache are returned without running anything. Returns
+	 * null if the trial is cancelled.
+	 * @param t trial number
+	 * @param trialSeed
+	 * @param percents
+	 * @param lengths
+	 * @return
+	 */
+	private TrialStats runTrial(int t, long trialSeed, int[] percents, int[] lengths){
+		//a warm started trial's solver has to see every point of its chain, so those aren't cached.
+		//neither are trials of engines whose flows can differ from run to run (UNIT, PARALLEL).
+		//the exact engines all give the same stats, so the key doesn't say which one ran
+		String cacheKey = null;
+		if(resultCache!=null && trialSolvers==null && MaxFlowSolvers.isExact(solverEngine)){
+			cacheKey = resultCache.key(lengths, percents, numDays, numAgents, segments, userTypes, sizeUserTypes,
+					trialSeed, "exact", contractGraphs, incrementalDailyFlows, trialDraws!=null, splittableRandom);
+			TrialStats cached = resultCache.get(cacheKey);
+			if(cached!=null){
+				return cached;
 			}
-			//construct and solve a large maxflow problem for the multiday problem
-			trial.calculateAllMultidayMaxFlows();
-			trial.calculateAllMultidayUnusedFlow();
+		}
+
+		//construct and run a trial
+		DemandAndCompetitivenessTrial trial = new DemandAndCompetitivenessTrial(lengths, segments, userTypes, sizeUserTypes, 
+				percents, numDays, numAgents,trialSeed);
+		trial.setSolverEngine(solverEngine);
+		trial.setContractGraphs(contractGraphs);
+		trial.setIncrementalDailyFlows(incrementalDailyFlows);
+		trial.setPointName(experParamName);
+		if(splittableRandom){
+			trial.useSplittableRandom();
+		}
+		PhaseMetrics metrics = null;
+		if(collectMetrics){
+			metrics = new PhaseMetrics();
+			metrics.addTrial();
+			trial.setMetrics(metrics);
+		}
+		//a copy, so a trial that is dropped leaves trialSolvers[t-1] as it was
+		WarmStartMaxFlow solver = null;
+		if(trialSolvers!=null){
+			solver = trialSolvers[t-1].next();
+			trial.setMultiDaySolver(solver);
+		}
+		if(trialDraws!=null){
+			trial.setDraws(trialDraws[t-1]);
+		}
 
-			//add this trial's result to the stats and output files for it
-			collectAndOutputStats(result);
+		//run trial t
+		GameResult result = trial.runExperiment(t);
+		if(cancelled()){
+			return null;
 		}
 
+		//if requested, run the max flow algorithm on every day of every trial
+		//these will only be printed if they are run
+		if(calcDailyFlows){
+			trial.calculateAllMaxFlows();
+		}
+		if(cancelled()){
+			return null;
+		}
+		//construct and solve a large maxflow problem for the multiday problem
+		trial.calculateAllMultidayMaxFlows();
+		trial.calculateAllMultidayUnusedFlow();
 
+		//stats for this trial, its result is written (and can be released) once it is kept
+		if(metrics!=null){
+			metrics.begin(PhaseMetrics.Phase.STATS);
+		}
+		TrialStats stats = collectStats(result);
+		if(metrics!=null){
+			metrics.end();
+			stats.metrics = metrics;
+		}
+		trial.releaseResults();
+		stats.result = result;
+		stats.cacheKey = cacheKey;
+		stats.solver = solver;
+		return stats;
 	}
 
 	/**
 	 * outputOverallResults
 	 */
-	public void outputOverallResults(FileWriter overallWriter){
+	public void outputOverallResults(Writer overallWriter){
 		String overallRes = baseFolder+"/"+experParamName;
+		//System.out.println("Overall Result file: "+ overallRes);
+
+		double avgNumCamp =avgNumCampaignsPerDay/(double)trialsRun;
+		double avgUnableMeet = (double)numUnderMet/(double)trialsRun;
+		double avgPercUnmet = (double)totalPercentUnmet/(double)numUnderMet;
+		double percExperienceComp = (double)totalShort/(double)totalDemanded;
+
+		System.out.println("Average NumCampaigns Per Day: "+avgNumCamp);
+		System.out.println("Average Num Unable to Meet Demand per game: "+avgUnableMeet);
+		System.out.println("Average Percent of a Campaign Unmet: "+avgPercUnmet);
+		System.out.println("Average Percent Experienced Competition: "+avgPercUnmet);
+		//standard deviation and 95% confidence interval half width of each value
+		String spread = spread(campaignsPerDayStat)+","+spread(underMetStat)+","+spread(percentUnmetStat)+","+spread(experienceCompStat);
+		System.out.println("SD,CI: "+spread+" Trials run: "+trialsRun);
+		String results = avgNumCamp+","+avgUnableMeet+","+avgPercUnmet+","+percExperienceComp+","+spread+","+trialsRun;
+		System.out.println("perc: "+percExperienceComp+" Total Short: "+totalShort+" total demanded: "+totalDemanded);
+		//TODO set these from main
+		if(avgUnableMeet>20 && avgPercUnmet<.40 && percExperienceComp>=.20){
+			System.out.println("____________________________________________________");
+		}
+
+		if(resultWriter!=null){
+			resultWriter.writeFile(overallRes, "finalResults.csv", results+"\n");
+			resultWriter.appendLine(overallWriter, experParamName+","+results);
+			return;
+		}
+
 		File file = new File(overallRes);
 		boolean success = file.mkdirs();
 		//System.out.println("Here 1: "+success);
-		//System.out.println("Overall Result file: "+ overallRes);
-
 		try {
 			FileWriter writer = new FileWriter(overallRes+"/finalResults.csv");
-
-			double avgNumCamp =avgNumCampaignsPerDay/(double)numTrials;
-			double avgUnableMeet = (double)numUnderMet/(double)numTrials;
-			double avgPercUnmet = (double)totalPercentUnmet/(double)numUnderMet;
-			double percExperienceComp = (double)totalShort/(double)totalDemanded;
-
-			System.out.println("Average NumCampaigns Per Day: "+avgNumCamp);
-			System.out.println("Average Num Unable to Meet Demand per game: "+avgUnableMeet);
-			System.out.println("Average Percent of a Campaign Unmet: "+avgPercUnmet);
-			System.out.println("Average Percent Experienced Competition: "+avgPercUnmet);
-			writer.append(avgNumCamp+","+avgUnableMeet+","+avgPercUnmet+","+percExperienceComp+"\n");
-			System.out.println("perc: "+percExperienceComp+" Total Short: "+totalShort+" total demanded: "+totalDemanded);
-			overallWriter.append(experParamName+","+avgNumCamp+","+avgUnableMeet+","+avgPercUnmet+","+percExperienceComp+"\n");
-			//TODO set these from main
-			if(avgUnableMeet>20 && avgPercUnmet<.40 && percExperienceComp>=.20){
-				System.out.println("____________________________________________________");
+			writer.append(results+"\n");
+			//grid points can finish at the same time, write and flush each line whole
+			synchronized(overallWriter){
+				overallWriter.append(experParamName+","+results+"\n");
+				overallWriter.flush();
 			}
 
 			writer.flush();
@@ -189,18 +577,150 @@ public class DemandAndCompetitivenessExperiment {
 	}
 
 
+	/**
+	 * writes the phase metrics of this experiment's trials to metrics.csv
+	 * in its output folder
+	 */
+	public void outputMetrics(){
+		String folder = baseFolder+"/"+experParamName;
+		String csv = PhaseMetrics.getHeader()+"\n"+pointMetrics.toCsv();
+		if(resultWriter!=null){
+			resultWriter.writeFile(folder, "metrics.csv", csv);
+			return;
+		}
+		new File(folder).mkdirs();
+		try {
+			FileWriter writer = new FileWriter(folder+"/metrics.csv");
+			writer.append(csv);
+			writer.flush();
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private String spread(RunningStat stat){
+		return stat.getStdDev()+","+stat.getConfidenceHalfWidth();
+	}
+
+
+	public void setSolverEngine(MaxFlowSolvers.Engine solverEngine){
+		this.solverEngine = solverEngine;
+	}
+
+	public void setContractGraphs(boolean contractGraphs){
+		this.contractGraphs = contractGraphs;
+	}
+
+	public void setNumThreads(int numThreads){
+		this.numThreads = numThreads;
+	}
+
+	public void setIncrementalDailyFlows(boolean incrementalDailyFlows){
+		this.incrementalDailyFlows = incrementalDailyFlows;
+	}
+
+	public void setTrialSolvers(WarmStartMaxFlow[] trialSolvers){
+		this.trialSolvers = trialSolvers;
+	}
+
+	/**
+	 * releases every trial's graphs and flows (see GameResult.release) as
+	 * soon as its stats are taken and its files are printed, so trials
+	 * waiting on the result writer only hold their games
+	 * @param ephemeralResults
+	 */
+	public void setEphemeralResults(boolean ephemeralResults){
+		this.ephemeralResults = ephemeralResults;
+	}
+
+	public void setSplittableRandom(boolean splittableRandom){
+		this.splittableRandom = splittableRandom;
+	}
+
+	public void setTrialDraws(CampaignDraws[] trialDraws){
+		this.trialDraws = trialDraws;
+	}
+
+	public void setCollectMetrics(boolean collectMetrics){
+		this.collectMetrics = collectMetrics;
+	}
+
+	public PhaseMetrics getMetrics(){
+		return pointMetrics;
+	}
+
+	public void setResultCache(ResultCache resultCache){
+		this.resultCache = resultCache;
+	}
+
+	public void setResultWriter(ResultWriter resultWriter){
+		this.resultWriter = resultWriter;
+	}
+
+	public void setBinaryOutput(boolean binaryOutput){
+		this.binaryOutput = binaryOutput;
+	}
+
+	/**
+	 * keeps running trials, up to numTrials, until the 95% confidence
+	 * intervals of the num unable to meet, percent unmet and experienced
+	 * competition are within targetPrecision of their means (e.g. .05 for
+	 * +/-5%), checked in trial order after each trial from minTrials on.
+	 * 0 always runs numTrials.
+	 * @param targetPrecision
+	 * @param minTrials
+	 */
+	public void setTargetPrecision(double targetPrecision, int minTrials){
+		this.targetPrecision = targetPrecision;
+		this.minTrials = minTrials;
+	}
+
+	public int getTrialsRun(){
+		return trialsRun;
+	}
+
+	/**
+	 * makes the random choices of one game of this experiment's setup
+	 * @param trialSeed
+	 * @param numLengths
+	 * @param numPercents
+	 * @return
+	 */
+	public CampaignDraws drawGame(long trialSeed, int numLengths, int numPercents){
+		if(splittableRandom){
+			return new CampaignDraws(new SplitMix64Random(trialSeed), numAgents, numDays, segments, numLengths, numPercents);
+		}
+		return new CampaignDraws(trialSeed, numAgents, numDays, segments, numLengths, numPercents);
+	}
+
 	/**
 	 * resets the statistics values for another experiment
 	 */
 	private void resetStats() {
+		trialsRun = 0;
 		avgNumCampaignsPerDay = 0.0;
 		numUnderMet = 0;
 		totalPercentUnmet = 0.0;
 		totalShort = 0;
 		totalDemanded = 0;
+		campaignsPerDayStat.reset();
+		underMetStat.reset();
+		percentUnmetStat.reset();
+		experienceCompStat.reset();
 
 	}
 
+	/**
+	 * Runs the parameter sweep set up below. With no arguments the whole grid
+	 * runs in this JVM. To split it over processes:
+	 * 	coordinator N			starts N local worker JVMs and merges their results
+	 * 	worker i N settings [threads]	runs shard i of N of the sweep in a settings file written by a coordinator
+	 * 	worker i N seed [threads]	runs shard i of N of the sweep set up below (run one per machine, all with the same seed)
+	 * 	merge N [settings]		merges the shard files of N workers
+	 * 	replay seed l1-l2-l3 p1-p2-p3 t	runs trial t of one grid point again on its own (needs splittableRandom)
+	 * @param args
+	 */
 	public static void main(String[] args){
 
 		/*
@@ -216,10 +736,67 @@ public class DemandAndCompetitivenessExperiment {
 		//set to true if you want to calculate and store the daily max flow problems as well *******************
 		//this will slow things down. I also don't have any stats collected for these at the moment.
 		boolean calcDailyFlows = false;
+		//set to true to start each day's max flow from the day before's (much faster, same total flow per day) *******************
+		//which campaigns come up short on a day can differ from solving the day from scratch
+		boolean incrementalDailyFlows = false;
+
+		//set to force a max flow engine (DENSE, SPARSE, UNIT, PARALLEL), AUTO picks one per graph *******************
+		//DENSE, SPARSE and AUTO reproduce MinCostMaxFlow's flows exactly, UNIT and PARALLEL can split the flow differently
+		MaxFlowSolvers.Engine solverEngine = MaxFlowSolvers.Engine.AUTO;
+
+		//set to true to merge equivalent user type and campaign nodes before solving the multiday graph *******************
+		//smaller graphs solve faster, the total flow is the same but which campaigns come up short can differ
+		boolean contractGraphs = false;
+
+		//set to true to write each trial's multiday matrices to one sparse multiday.bin instead of two dense csvs *******************
+		//much smaller and faster to write, "java SparseMatrixFile multiday.bin" turns one back into the csvs
+		boolean binaryOutput = false;
+
+		//set to true to drop each trial's graphs and flows once its stats are taken and files written *******************
+		//keeps memory per trial in flight small, a released result rebuilds them if anything asks
+		boolean ephemeralResults = true;
+
+		//set to true to time every phase of every trial, written to each point's metrics.csv and summed up in metricsSummary.csv *******************
+		boolean collectMetrics = true;
+
+		//set a folder to keep every trial's stats in, so points already run (by any sweep) aren't run again *******************
+		//least recently used trials are dropped past cacheMegabytes, bump ResultCache.VERSION when the simulator or solvers change
+		String cacheFolder = null;
+		long cacheMegabytes = 1024;
+
+		//set to true to pick up a stopped sweep of the same name and settings where it left off *******************
+		//points in its checkpoint.csv are skipped, false starts the sweep over
+		boolean resume = true;
+
+		//set how many finished results can wait to be written by the sweep's writer thread *******************
+		//trials block when it is full, 0 writes files on the threads running the trials
+		int writeQueueSize = 64;
+
+		//set the number of grid points and of trials per point to run at once *******************
+		//results are the same for any number of threads, all trial seeds are drawn before anything runs
+		int sweepThreads = Runtime.getRuntime().availableProcessors();
+		int numThreads = 1;
+
+		//set to true to start each multiday max flow from the same game's solve at the previous percents *******************
+		//every grid point then runs the same games (trial seeds), the flows are the same as solving from zero
+		boolean warmStart = false;
+
+		//set to true so trial t of every grid point sees the same campaign arrivals (common random numbers) *******************
+		//only the lengths/percents applied to them change, so neighbouring points can be compared with fewer trials
+		boolean commonRandomNumbers = false;
 
 		//set a number of trials per experimental settings *******************
 		int numTrials = 30;
 
+		//set above 0 to stop a grid point's trials once its confidence intervals are within this fraction of the means *******************
+		//(e.g. .05 for +/-5%), numTrials is then the most a point runs and minTrials the fewest
+		double targetPrecision = 0.0;
+		int minTrials = 8;
+
+		//set to true to work every trial's seed out from the seed, grid point and trial number *******************
+		//any trial can then be run again on its own with "replay", but games differ from the chained java.util.Random seeds
+		boolean splittableRandom = true;
+
 		//-1 means no seed will be set, set a seed to run the same experiment repeatedly *******************
 		long seed = -1;
 
@@ -249,50 +826,74 @@ public class DemandAndCompetitivenessExperiment {
 
 		int pInc = 2;//increments through the search space by this value *******************
 
-		int[]percents = new int[3];
-		int[]lengths = new int[3];
-		
-		DemandAndCompetitivenessExperiment experiment = new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials,seed, calcDailyFlows);
+		ParameterSweep sweep = new ParameterSweep(experimentName, baseFolder, numTrials, seed, calcDailyFlows);
+		sweep.setLengthRange(new int[]{minl1,minl2,minl3}, new int[]{maxl1,maxl2,maxl3}, lInc);
+		sweep.setPercentRange(new int[]{minp1,minp2,minp3}, new int[]{maxp1,maxp2,maxp3}, pInc);
+		sweep.setSolverEngine(solverEngine);
+		sweep.setContractGraphs(contractGraphs);
+		sweep.setTrialThreads(numThreads);
+		sweep.setSweepThreads(sweepThreads);
+		sweep.setWarmStart(warmStart);
+		sweep.setCommonRandomNumbers(commonRandomNumbers);
+		sweep.setIncrementalDailyFlows(incrementalDailyFlows);
+		sweep.setTargetPrecision(targetPrecision, minTrials);
+		sweep.setBinaryOutput(binaryOutput);
+		sweep.setWriteQueueSize(writeQueueSize);
+		sweep.setResume(resume);
+		sweep.setCollectMetrics(collectMetrics);
+		sweep.setSplittableRandom(splittableRandom);
+		sweep.setEphemeralResults(ephemeralResults);
+		if(cacheFolder!=null){
+			sweep.setResultCache(new ResultCache(cacheFolder, cacheMegabytes<<20));
+		}
 
-		FileWriter overallWriter;
-		try {
-			//System.out.println(baseFolder+"/"+experimentName);
-			File file = new File(baseFolder+"/"+experimentName);
-			
-			file.mkdirs();
-			overallWriter = new FileWriter(baseFolder+"/"+experimentName+"/summaryRes.csv");
-
-			for(int l1=minl1;l1<=maxl1;l1+=lInc){
-				for(int l2=minl2;l2<=maxl2;l2+=lInc){
-					for(int l3=minl3;l3<=maxl3;l3+=lInc){
-
-						for(int p1=minp1;p1<=maxp1;p1+=pInc){
-							for(int p2=minp2;p2<=maxp2;p2+=pInc){
-								for(int p3=minp3;p3<=maxp3;p3+=pInc){
-
-									System.out.println(l1+" "+l2+" "+l3+" "+p1+" "+p2+" "+p3);
-									percents[0] = p1;
-									percents[1] = p2;
-									percents[2] = p3;
-									lengths[0] = l1;
-									lengths[1] = l2;
-									lengths[2] = l3;
-
-									experiment.resetStats();
-									experiment.runExperiment(percents, lengths);
-									experiment.outputOverallResults(overallWriter);
-
-								}
-							}
-						}
-					}
-				}
+		if(args.length>=2 && args[0].equals("coordinator")){
+			sweep.runCoordinator(Integer.parseInt(args[1]));
+		}else if(args.length>=4 && args[0].equals("worker")){
+			if(args[3].endsWith(".properties")){
+				//the coordinator's sweep, not the one set up above
+				sweep = readSweep(args[3]);
+			}else{
+				sweep.setSeed(Long.parseLong(args[3]));
+			}
+			if(args.length>=5){
+				sweep.setSweepThreads(Integer.parseInt(args[4]));
 			}
-			overallWriter.flush();
-			overallWriter.close();
+			sweep.runShard(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		}else if(args.length>=2 && args[0].equals("merge")){
+			if(args.length>=3){
+				sweep = readSweep(args[2]);
+			}
+			sweep.merge(Integer.parseInt(args[1]));
+		}else if(args.length>=5 && args[0].equals("replay")){
+			sweep.setSeed(Long.parseLong(args[1]));
+			sweep.replayTrial(parseValues(args[2]), parseValues(args[3]), Integer.parseInt(args[4]));
+		}else{
+			//runs every point of the grid and writes summaryRes.csv as points finish
+			sweep.run();
+		}
+	}
+
+	private static ParameterSweep readSweep(String settingsFile){
+		try {
+			return ParameterSweep.readSettings(settingsFile);
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new RuntimeException("can't read sweep settings from "+settingsFile, e);
+		}
+	}
+
+	/**
+	 * reads values written as a-b-c, e.g. 3-5-10
+	 * @param values
+	 * @return
+	 */
+	private static int[] parseValues(String values){
+		String[] parts = values.split("-");
+		int[] parsed = new int[parts.length];
+		for(int i = 0;i<parts.length;i++){
+			parsed[i] = Integer.parseInt(parts[i]);
 		}
+		return parsed;
 	}
 
 }
@@ -26,6 +26,19 @@ public class DemandAndCompetitivenessTrial {
 
 	double avgNumCampaigns;
 
+	//which max flow engine to use, AUTO picks one per graph
+	MaxFlowSolvers.Engine solverEngine = MaxFlowSolvers.Engine.AUTO;
+	//merge equivalent nodes of the multiday graph before solving it
+	boolean contractGraphs = false;
+	//carry each day's flow over to the next day instead of solving every day from scratch
+	boolean incrementalDailyFlows = false;
+	//if set, solves the multiday graph instead of the engine (e.g. a warm started solver)
+	MaxFlowSolver multiDaySolver;
+	//if set, the time, allocations and solver iterations of each phase are added to it
+	PhaseMetrics metrics;
+	//grid point of this trial, for flight recorder events
+	String pointName = "";
+
 
 	public DemandAndCompetitivenessTrial(int[] lengths,String[]segments,String[] userTypes, int[] sizeUserTypes, 
 			int[] percents, int numDays, int numAgents, long seed){
@@ -43,33 +56,97 @@ public class DemandAndCompetitivenessTrial {
 	 * @param results
 	 */
 	public void calculateAllMaxFlows(){
+		begin(PhaseMetrics.Phase.DAY_GRAPHS);
 		constructAllAdjacencyMatrices(results);
+		end();
+		if(metrics!=null){
+			for(GameResult result : results){
+				addDayGraphs(result);
+			}
+		}
+		begin(PhaseMetrics.Phase.DAY_FLOWS);
 		for(int t=0;t<results.size();t++){
-			results.get(t).calculateAllDaysFlow();
+			if(incrementalDailyFlows){
+				results.get(t).calculateAllDaysFlowIncremental();
+			}else{
+				results.get(t).calculateAllDaysFlow(solverEngine);
+			}
 		}
+		end();
 	}
 
 	public void calculateAllMultidayMaxFlows() {
+		begin(PhaseMetrics.Phase.MULTIDAY_GRAPH);
 		constructAllMultiDayAdjacencyMatrices(results);
+		end();
+		if(metrics!=null){
+			for(GameResult result : results){
+				FlowGraph graph = result.getMultiDayGraph();
+				metrics.addGraph(PhaseMetrics.Phase.MULTIDAY_GRAPH, graph.getNumNodes(), graph.getNumEdges());
+			}
+		}
+		begin(PhaseMetrics.Phase.MULTIDAY_FLOW);
 		for(int t=0;t<results.size();t++){
-			results.get(t).calculateMultiDayFlow();
+			if(multiDaySolver!=null){
+				results.get(t).calculateMultiDayFlow(multiDaySolver);
+			}else{
+				results.get(t).calculateMultiDayFlow(solverEngine, contractGraphs);
+			}
 		}
+		end();
 
 	}
 
 	private void calculateAllMultidayMaxFlows(ArrayList<GameResult> results) {
 		constructAllMultiDayAdjacencyMatrices(results);
 		for(int t=0;t<results.size();t++){
-			results.get(t).calculateMultiDayFlow();
+			if(multiDaySolver!=null){
+				results.get(t).calculateMultiDayFlow(multiDaySolver);
+			}else{
+				results.get(t).calculateMultiDayFlow(solverEngine, contractGraphs);
+			}
 		}
 
 	}
 
 	public void calculateAllMultidayUnusedFlow() {
+		begin(PhaseMetrics.Phase.UNUSED_FLOW);
 		for(GameResult result : results){
 			result.calcMultidayUnusedFlow();
 		}
+		end();
+
+	}
+
+	private void begin(PhaseMetrics.Phase phase){
+		if(metrics!=null){
+			metrics.begin(phase);
+		}
+	}
+
+	private void end(){
+		if(metrics!=null){
+			metrics.end();
+		}
+	}
 
+	/**
+	 * records the size (nodes and non-zero edges) of every day's graph
+	 * @param result
+	 */
+	private void addDayGraphs(GameResult result){
+		for(int d = 0;d<numDays;d++){
+			int n = result.getDayNumNodes(d);
+			int edges = 0;
+			for(int i = 0;i<n;i++){
+				for(int j = 0;j<n;j++){
+					if(i!=j && result.getDayAdjacency(d, i, j)>0){
+						edges++;
+					}
+				}
+			}
+			metrics.addGraph(PhaseMetrics.Phase.DAY_GRAPHS, n, edges);
+		}
 	}
 
 	/**
@@ -79,7 +156,11 @@ public class DemandAndCompetitivenessTrial {
 	public void calculateAllMaxFlows(ArrayList<GameResult> subsetResults){
 		constructAllAdjacencyMatrices(subsetResults);
 		for(int t=0;t<subsetResults.size();t++){
-			subsetResults.get(t).calculateAllDaysFlow();
+			if(incrementalDailyFlows){
+				subsetResults.get(t).calculateAllDaysFlowIncremental();
+			}else{
+				subsetResults.get(t).calculateAllDaysFlow(solverEngine);
+			}
 		}
 	}
 
@@ -97,7 +178,12 @@ public class DemandAndCompetitivenessTrial {
 
 	public void constructAllMultiDayAdjacencyMatrices(ArrayList<GameResult> trialsResults) {
 		for(GameResult result :trialsResults){
+			SimulationEvents.GraphBuild event = new SimulationEvents.GraphBuild();
+			event.begin();
 			simulator.constructMultiDayAdjacencyMatrix(result);
+			FlowGraph graph = result.getMultiDayGraph();
+			SimulationEvents.commit(event, pointName, result.resNumber, SimulationEvents.MULTIDAY,
+					graph.getNumNodes(), graph.getNumEdges());
 		}
 	}
 
@@ -118,7 +204,28 @@ public class DemandAndCompetitivenessTrial {
 		//simulate numTrials number of games and calc average num campaigns
 
 
+		begin(PhaseMetrics.Phase.SIMULATE);
+		SimulationEvents.Simulate event = new SimulationEvents.Simulate();
+		event.begin();
 		GameResult result = simulator.simulateGame(trial);
+		event.end();
+		if(event.shouldCommit()){
+			event.point = pointName;
+			event.trial = trial;
+			event.campaigns = result.getCampaigns().size();
+			event.commit();
+		}
+		end();
+		result.setPointName(pointName);
+		//only holds the simulator and settings, not the trial
+		Rebuild rebuild = new Rebuild();
+		rebuild.simulator = simulator;
+		rebuild.solverEngine = solverEngine;
+		rebuild.contractGraphs = contractGraphs;
+		rebuild.incrementalDailyFlows = incrementalDailyFlows;
+		rebuild.warmStarted = multiDaySolver instanceof WarmStartMaxFlow;
+		rebuild.otherSolver = multiDaySolver!=null && !rebuild.warmStarted;
+		result.setRebuilder(rebuild);
 		results.add(result);
 
 		avgNumCampaigns = result.calculateAvgNumCampaigns();
@@ -156,12 +263,12 @@ public class DemandAndCompetitivenessTrial {
 	 */
 	private int calcUnusedImpressions(int day, GameResult result) {
 		int unused = 0;
-		int[][] unusedFlow = result.getUnusedFlow(day);
+		int n = result.getDayNumNodes(day);
 
 		//sum along first row to get edges out of source
-		for(int j = 0;j<unusedFlow[0].length;j++){
-			if(unusedFlow[0][j]>0){
-				unused+=unusedFlow[0][j];
+		for(int j = 0;j<n;j++){
+			if(result.getUnusedFlow(day, 0, j)>0){
+				unused+=result.getUnusedFlow(day, 0, j);
 			}
 		}
 		return unused;
@@ -177,12 +284,12 @@ public class DemandAndCompetitivenessTrial {
 	 */
 	private int calcUnmetReach(int day, GameResult result) {
 		int unmet = 0;
-		int[][] unusedFlow = result.getUnusedFlow(day);
+		int n = result.getDayNumNodes(day);
 
 		//sum along last col. to get edges into sink
-		for(int i = 0; i<unusedFlow.length;i++){
-			if(unusedFlow[i][unusedFlow[0].length-1]>0){
-				unmet+=unusedFlow[i][unusedFlow[0].length-1];
+		for(int i = 0; i<n;i++){
+			if(result.getUnusedFlow(day, i, n-1)>0){
+				unmet+=result.getUnusedFlow(day, i, n-1);
 			}
 		}
 		return unmet;
@@ -196,14 +303,15 @@ public class DemandAndCompetitivenessTrial {
 	 * @param result
 	 */
 	private void printUnusedFlow(int day, GameResult result) {
-		int[][] unusedFlow = result.getUnusedFlow(day);
+		int n = result.getDayNumNodes(day);
+		ArrayList<String> nodes = result.getNodes(day);
 		System.out.println();
 		System.out.println("User Types  Not Shown Ads:");
 
 		//sum along first row to get edges out of source
-		for(int j = 0;j<unusedFlow[0].length;j++){
-			if(unusedFlow[0][j]>0){
-				System.out.println(result.getNodes(day).get(j)+": "+unusedFlow[0][j]);
+		for(int j = 0;j<n;j++){
+			if(result.getUnusedFlow(day, 0, j)>0){
+				System.out.println(nodes.get(j)+": "+result.getUnusedFlow(day, 0, j));
 			}
 		}
 		System.out.println();
@@ -211,9 +319,9 @@ public class DemandAndCompetitivenessTrial {
 		System.out.println("Campaigns Wanting Impressions:");
 
 		//sum along last col. to get edges into sink
-		for(int i = 0; i<unusedFlow.length;i++){
-			if(unusedFlow[i][unusedFlow[0].length-1]>0){
-				System.out.println(result.getNodes(day).get(i)+": "+unusedFlow[i][unusedFlow[0].length-1]);
+		for(int i = 0; i<n;i++){
+			if(result.getUnusedFlow(day, i, n-1)>0){
+				System.out.println(nodes.get(i)+": "+result.getUnusedFlow(day, i, n-1));
 			}
 		}
 		System.out.println();
@@ -221,13 +329,14 @@ public class DemandAndCompetitivenessTrial {
 	}
 
 	private ArrayList<String> getTargetSegmentsUnder(int day, GameResult result) {
-		int[][] unusedFlow = result.getUnusedFlow(day);
+		int n = result.getDayNumNodes(day);
+		ArrayList<String> nodes = result.getNodes(day);
 		ArrayList<String> targetSegsUnder = new ArrayList<String>();
 
 		//sum along last col. to get edges into sink
-		for(int i = 0; i<unusedFlow.length;i++){
-			if(unusedFlow[i][unusedFlow[0].length-1]>0){
-				targetSegsUnder.add(result.getNodes(day).get(i));
+		for(int i = 0; i<n;i++){
+			if(result.getUnusedFlow(day, i, n-1)>0){
+				targetSegsUnder.add(nodes.get(i));
 			}
 		}
 
@@ -237,12 +346,13 @@ public class DemandAndCompetitivenessTrial {
 
 	private ArrayList<String> getUserTypesUnder(int day, GameResult result) {
 		ArrayList<String> userTypesUnder = new ArrayList<String>();
-		int[][] unusedFlow = result.getUnusedFlow(day);
+		int n = result.getDayNumNodes(day);
+		ArrayList<String> nodes = result.getNodes(day);
 
 		//sum along first row to get edges out of source
-		for(int j = 0;j<unusedFlow[0].length;j++){
-			if(unusedFlow[0][j]>0){
-				userTypesUnder.add(result.getNodes(day).get(j));
+		for(int j = 0;j<n;j++){
+			if(result.getUnusedFlow(day, 0, j)>0){
+				userTypesUnder.add(nodes.get(j));
 			}
 		}
 
@@ -250,6 +360,91 @@ public class DemandAndCompetitivenessTrial {
 
 	}
 
+	/**
+	 * rebuilds a released result with this trial's simulator and engine. A
+	 * warm started multiday flow is solved again from scratch with
+	 * SparseMaxFlow, whose flows a warm start gives exactly (see
+	 * WarmStartMaxFlow). A multiday flow from any other solver set on the
+	 * trial can't be made again, so that result isn't rebuilt.
+	 */
+	private static class Rebuild implements GameResult.Rebuilder {
+		CampaignSimulator simulator;
+		MaxFlowSolvers.Engine solverEngine;
+		boolean contractGraphs;
+		boolean incrementalDailyFlows;
+		boolean warmStarted;
+		boolean otherSolver;
+
+		public void rebuild(GameResult result, boolean dailyGraphs){
+			if(otherSolver){
+				throw new IllegalStateException("result "+result.resNumber+" was solved by a solver its flows can't be made again with");
+			}
+			if(dailyGraphs){
+				simulator.constructAllAdjacencyMatricies(result);
+				if(incrementalDailyFlows){
+					result.calculateAllDaysFlowIncremental();
+				}else{
+					result.calculateAllDaysFlow(solverEngine);
+				}
+			}
+			simulator.constructMultiDayAdjacencyMatrix(result);
+			if(warmStarted){
+				result.calculateMultiDayFlow(new SparseMaxFlow());
+			}else{
+				result.calculateMultiDayFlow(solverEngine, contractGraphs);
+			}
+			result.calcMultidayUnusedFlow();
+		}
+	}
+
+	/**
+	 * drops the stored results once their stats have been taken, so a trial
+	 * doesn't hold on to its graphs
+	 */
+	public void releaseResults(){
+		results.clear();
+	}
+
+	public void setSolverEngine(MaxFlowSolvers.Engine solverEngine){
+		this.solverEngine = solverEngine;
+	}
+
+	public void setContractGraphs(boolean contractGraphs){
+		this.contractGraphs = contractGraphs;
+	}
+
+	public void setIncrementalDailyFlows(boolean incrementalDailyFlows){
+		this.incrementalDailyFlows = incrementalDailyFlows;
+	}
+
+	/**
+	 * plays the given draws (campaign arrivals) instead of drawing from the seed
+	 * @param draws
+	 */
+	public void setDraws(CampaignDraws draws){
+		simulator.setDraws(draws);
+	}
+
+	/**
+	 * draws the game from a SplitMix64Random of the trial's seed instead of
+	 * a java.util.Random
+	 */
+	public void useSplittableRandom(){
+		simulator.setRandom(new SplitMix64Random(simulator.seed));
+	}
+
+	public void setPointName(String pointName){
+		this.pointName = pointName;
+	}
+
+	public void setMetrics(PhaseMetrics metrics){
+		this.metrics = metrics;
+	}
+
+	public void setMultiDaySolver(MaxFlowSolver multiDaySolver){
+		this.multiDaySolver = multiDaySolver;
+	}
+
 	public void runExperimentsPrintResults(){
 
 
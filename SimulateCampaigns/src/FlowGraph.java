@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * FlowGraph is a directed graph with integer capacities stored as an edge
+ * list (from[e], to[e], cap[e]). The max flow engines share it so that a
+ * graph is only converted once, and so an engine can be picked from the
+ * node and edge counts before anything is solved.
+ *
+ * Engines that need a residual graph use the arcs: every edge e gives a
+ * forward arc (2e) out of from[e] and a backward arc (2e+1) out of to[e].
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class FlowGraph {
+
+	int numNodes;
+	int numEdges;
+	int[] from;
+	int[] to;
+	int[] cap;
+
+	//residual arcs grouped by tail node, built on first use
+	private int[] arcStart;
+	private int[] arcs;
+
+
+	public FlowGraph(int numNodes, int[] from, int[] to, int[] cap){
+		this.numNodes = numNodes;
+		this.numEdges = from.length;
+		this.from = from;
+		this.to = to;
+		this.cap = cap;
+	}
+
+
+	/**
+	 * builds a graph from a capacity matrix. Only the non-zero, off-diagonal
+	 * cells become edges, in row major order.
+	 * @param matrix
+	 * @return
+	 */
+	public static FlowGraph fromMatrix(int[][] matrix){
+		int n = matrix.length;
+		int m = 0;
+		for(int i = 0;i<n;i++){
+			for(int j = 0;j<n;j++){
+				if(matrix[i][j]>0 && i!=j){
+					m++;
+				}
+			}
+		}
+
+		int[] from = new int[m];
+		int[] to = new int[m];
+		int[] cap = new int[m];
+		m = 0;
+		for(int i = 0;i<n;i++){
+			for(int j = 0;j<n;j++){
+				if(matrix[i][j]>0 && i!=j){
+					from[m] = i;
+					to[m] = j;
+					cap[m] = matrix[i][j];
+					m++;
+				}
+			}
+		}
+		return new FlowGraph(n, from, to, cap);
+	}
+
+
+	/**
+	 * builds a graph from an n x n capacity matrix stored row by row in a
+	 * flat buffer starting at offset
+	 * @param cells
+	 * @param offset
+	 * @param n
+	 * @return
+	 */
+	public static FlowGraph fromMatrix(int[] cells, int offset, int n){
+		int m = 0;
+		for(int i = 0;i<n;i++){
+			for(int j = 0;j<n;j++){
+				if(cells[offset+i*n+j]>0 && i!=j){
+					m++;
+				}
+			}
+		}
+
+		int[] from = new int[m];
+		int[] to = new int[m];
+		int[] cap = new int[m];
+		m = 0;
+		for(int i = 0;i<n;i++){
+			for(int j = 0;j<n;j++){
+				if(cells[offset+i*n+j]>0 && i!=j){
+					from[m] = i;
+					to[m] = j;
+					cap[m] = cells[offset+i*n+j];
+					m++;
+				}
+			}
+		}
+		return new FlowGraph(n, from, to, cap);
+	}
+
+
+	/**
+	 * spreads a per-edge value (flow, unused capacity...) out into a
+	 * numNodes x numNodes matrix
+	 * @param edgeValues
+	 * @return
+	 */
+	public int[][] toMatrix(int[] edgeValues){
+		int[][] matrix = new int[numNodes][numNodes];
+		for(int e = 0;e<numEdges;e++){
+			matrix[from[e]][to[e]] += edgeValues[e];
+		}
+		return matrix;
+	}
+
+
+	private void buildArcs(){
+		arcStart = new int[numNodes+1];
+		for(int e = 0;e<numEdges;e++){
+			arcStart[from[e]+1]++;
+			arcStart[to[e]+1]++;
+		}
+		for(int n = 0;n<numNodes;n++){
+			arcStart[n+1] += arcStart[n];
+		}
+		arcs = new int[2*numEdges];
+		int[] next = Arrays.copyOf(arcStart, numNodes);
+		for(int e = 0;e<numEdges;e++){
+			arcs[next[from[e]]++] = e << 1;
+			arcs[next[to[e]]++] = (e << 1) | 1;
+		}
+	}
+
+	/**
+	 * the arcs of node n are arcs[arcStart[n]] .. arcs[arcStart[n+1]-1]
+	 * @return
+	 */
+	public int[] getArcStart(){
+		if(arcStart==null){
+			buildArcs();
+		}
+		return arcStart;
+	}
+
+	public int[] getArcs(){
+		if(arcs==null){
+			buildArcs();
+		}
+		return arcs;
+	}
+
+	/**
+	 * the node an arc points to
+	 * @param arc
+	 * @return
+	 */
+	public int head(int arc){
+		return (arc & 1) == 0 ? to[arc >> 1] : from[arc >> 1];
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public int getNumNodes(){
+		return numNodes;
+	}
+
+	public int getNumEdges(){
+		return numEdges;
+	}
+
+	public int[] getFrom(){
+		return from;
+	}
+
+	public int[] getTo(){
+		return to;
+	}
+
+	public int[] getCap(){
+		return cap;
+	}
+
+}
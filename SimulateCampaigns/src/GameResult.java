@@ -1,15 +1,21 @@
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 
 /**
  * GameResult is a data class that holds all computed results for a game.
  * Some results are simulated and others are calculated using Max Flow 
  * to determine the competitiveness of the game.
  * 
+ * Once its stats are taken and its files printed, a result can be
+ * released: its graphs and flows are dropped and only the simulated game
+ * (the campaigns) is kept. Anything that asks for a released graph or flow
+ * has it rebuilt from the game by the result's Rebuilder, so holding on to
+ * a released result costs next to nothing.
+ * 
  * @author betsy betsy@cs.brown.edu
  *
  */
@@ -17,53 +23,92 @@ import java.util.HashMap;
 public class GameResult {
 
 	//These come from the simulator
-	private HashMap<Integer,ArrayList<String>> marketsHeld;
-	private HashMap<Integer,ArrayList<Integer>> percentMarket;
-	private HashMap<Integer,ArrayList<Integer>> numDaysCampRun;
+	private CampaignTable campaigns; //every campaign in the game, one row each
+	private DayLists campaignsHeld; //rows of the campaigns running each day
 	private int[] numCampaignsPerDay;
+	private String[] userTypes; //used for node labels only
 
 	//These are calculated after simulator runs
 	private double averageNumCampaigns;
-	private HashMap<Integer,int[][]> dailyAdjacencies;
-	private HashMap<Integer,int[][]> dailyFlows;
-	private HashMap<Integer,int[][]> unusedFlows;
-	private HashMap<Integer,ArrayList<String>> nodes;
-	private ArrayList<String> multiDayNodes;
-	private int[][] multiDayAdjacencyMatrix;
-	private int[][] multiDayFlow;
-	private int[][] multiDayUnusedFlow;
+	private DayMatrices dailyAdjacencies;
+	private DayMatrices dailyFlows;
+	private DayMatrices unusedFlows;
+	private int[] multiDayCampaignRows; //campaign row of each multiday campaign node
+	private FlowGraph multiDayGraph; //edge list, the multiday graph is too big for a matrix
+	private int[] multiDayFlow; //flow on each edge of multiDayGraph
+	private int[] multiDayUnusedFlow; //capacity-flow on each edge of multiDayGraph
 
 	int resNumber;
+	private Rebuilder rebuilder; //rebuilds the graphs and flows once released, null if they can't be
+	private boolean released = false;
+	private boolean releasedDailyGraphs = false; //the daily graphs had been built when released
+	private String pointName = ""; //grid point the game was played for, in flight recorder events
+
+
+	/**
+	 * rebuilds a released result's graphs and flows from its game, the way
+	 * its trial first built and solved them
+	 */
+	public interface Rebuilder {
+		/**
+		 * @param result
+		 * @param dailyGraphs also build (and solve) every day's graph
+		 */
+		void rebuild(GameResult result, boolean dailyGraphs);
+	}
 
 
-	public GameResult(HashMap<Integer,ArrayList<String>> marketsHeld, 
-			HashMap<Integer,ArrayList<Integer>> percentMarket,HashMap<Integer,ArrayList<Integer>> numDaysCampRun, int[] numCampaignsPerDay,
-			int resNumber){
+	public GameResult(CampaignTable campaigns, DayLists campaignsHeld,
+			int[] numCampaignsPerDay, String[] userTypes, int resNumber){
 		this.resNumber = resNumber;
-		this.marketsHeld = marketsHeld;
-		this.percentMarket = percentMarket;
-		this.numDaysCampRun = numDaysCampRun;
+		this.campaigns = campaigns;
+		this.campaignsHeld = campaignsHeld;
 		this.numCampaignsPerDay = numCampaignsPerDay;
+		this.userTypes = userTypes;
 
-		dailyAdjacencies = new HashMap<Integer,int[][]>();
-		dailyFlows = new HashMap<Integer,int[][]>();
-		unusedFlows = new HashMap<Integer,int[][]>();
-		nodes = new HashMap<Integer,ArrayList<String>>();
+		dailyAdjacencies = new DayMatrices(numCampaignsPerDay.length);
+		dailyFlows = new DayMatrices(numCampaignsPerDay.length);
+		unusedFlows = new DayMatrices(numCampaignsPerDay.length);
 
 		this.averageNumCampaigns = calculateAvgNumCampaigns();
 
 	}
 
 	public void printGameResult(String baseDirectory){
+		printGameResult(baseDirectory, false);
+	}
+
+	/**
+	 * prints this result under baseDirectory/resNumber. If binary, the
+	 * multiday adjacency and flow go in one sparse multiday.bin (see
+	 * SparseMatrixFile) instead of two dense csv files.
+	 * @param baseDirectory
+	 * @param binary
+	 */
+	public void printGameResult(String baseDirectory, boolean binary){
+		rehydrate();
+		SimulationEvents.PrintResult event = new SimulationEvents.PrintResult();
+		event.begin();
+		writeGameResult(baseDirectory, binary);
+		event.end();
+		if(event.shouldCommit()){
+			event.point = pointName;
+			event.trial = resNumber;
+			event.binary = binary;
+			event.commit();
+		}
+	}
+
+	private void writeGameResult(String baseDirectory, boolean binary){
 		/*to print
 		 *
-		 * HashMap<Integer,ArrayList<String>> nodes;
-		 * private HashMap<Integer,int[][]> dailyAdjacencies;
-		 * private HashMap<Integer,int[][]> dailyFlows;
+		 * getNodes(day);
+		 * private DayMatrices dailyAdjacencies;
+		 * private DayMatrices dailyFlows;
 		 *
-		 * ArrayList<String> multiDayNodes;
-		 * int[][] multiDayAdjacencyMatrix;
-		 * int[][] multiDayFlow;
+		 * getMultiDayNodes();
+		 * FlowGraph multiDayGraph;
+		 * int[] multiDayFlow;
 		 *
 		 */
 		baseDirectory = baseDirectory+"/"+resNumber;
@@ -76,35 +121,34 @@ public class GameResult {
 			//FileWriter writer = new FileWriter(baseDirectory+"/simResults.csv");
 
 			//make writer for base/ResultNum/simResults.csv
-			//System.out.println(marketsHeld.size());
-			for(int day = 0; day<marketsHeld.size();day++){
+			//System.out.println(campaignsHeld.getNumDays());
+			for(int day = 0; day<campaignsHeld.getNumDays();day++){
 				//writer.append(day+", markets");
-				for(String mkt : marketsHeld.get(day)){
-					//writer.append(","+mkt);
+				for(int c = 0;c<campaignsHeld.size(day);c++){
+					//writer.append(","+campaigns.getLabel(campaignsHeld.get(day, c)));
 				}
 				//writer.append('\n');
 
 				//writer.append(day+", percents");
-				for(Integer perc : percentMarket.get(day)){
+				for(int c = 0;c<campaignsHeld.size(day);c++){
 					//print
-					//writer.append(","+perc);
+					//writer.append(","+campaigns.getReachPercent(campaignsHeld.get(day, c)));
 				}
 				//writer.append('\n');
 				//print ln
 
 				//writer.append(day+", length");
-				for(Integer length : numDaysCampRun.get(day)){
+				for(int c = 0;c<campaignsHeld.size(day);c++){
 					//print
-					//writer.append(","+length);
+					//writer.append(","+campaigns.getLength(campaignsHeld.get(day, c)));
 				}
 				//writer.append('\n');
 
-				//System.out.println(nodes.size());
 				//System.out.println(day);
-				//System.out.println(marketsHeld.size());
-				if(dailyAdjacencies.get(day)!=null && dailyFlows.get(day)!=null){
-					//printNodeMatrix(dailyAdjacencies.get(day), nodes.get(day), baseDirectory+"adjacency_"+day+".csv");
-					//printNodeMatrix(dailyFlows.get(day), nodes.get(day), baseDirectory+"flow_"+day+".csv");
+				//System.out.println(campaignsHeld.getNumDays());
+				if(dailyAdjacencies.has(day) && dailyFlows.has(day)){
+					//printNodeMatrix(dailyAdjacencies.toMatrix(day), getNodes(day), baseDirectory+"adjacency_"+day+".csv");
+					//printNodeMatrix(dailyFlows.toMatrix(day), getNodes(day), baseDirectory+"flow_"+day+".csv");
 				}
 
 			}
@@ -114,8 +158,14 @@ public class GameResult {
 			// TODO Auto-generated catch block
 			//e.printStackTrace();
 		//}
-		printNodeMatrix(multiDayAdjacencyMatrix, multiDayNodes, baseDirectory+"/multidayAdjacency.csv");
-		printNodeMatrix(multiDayFlow, multiDayNodes, baseDirectory+"/multidayFlow.csv");
+		ArrayList<String> multiDayNodes = getMultiDayNodes();
+		if(binary){
+			SparseMatrixFile.write(baseDirectory+"/multiday.bin", multiDayNodes, multiDayGraph,
+					new String[]{"multidayAdjacency","multidayFlow"}, new int[][]{multiDayGraph.getCap(), multiDayFlow});
+			return;
+		}
+		printNodeMatrix(multiDayGraph, multiDayGraph.getCap(), multiDayNodes, baseDirectory+"/multidayAdjacency.csv");
+		printNodeMatrix(multiDayGraph, multiDayFlow, multiDayNodes, baseDirectory+"/multidayFlow.csv");
 
 
 	}
@@ -145,6 +195,49 @@ public class GameResult {
 		}
 	}
 
+	/**
+	 * prints per-edge values of a graph in the same layout as a node matrix,
+	 * one row at a time so the whole matrix is never held in memory
+	 * @param graph
+	 * @param edgeValues
+	 * @param matrixNodes
+	 * @param fileName
+	 */
+	private void printNodeMatrix(FlowGraph graph, int[] edgeValues, ArrayList<String> matrixNodes, String fileName){
+		int n = graph.getNumNodes();
+		int[] arcStart = graph.getArcStart();
+		int[] arcs = graph.getArcs();
+		int[] row = new int[n];
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+
+			for(String name : matrixNodes){
+				writer.append(","+name);
+			}
+			writer.append('\n');
+			//print matrix
+			for(int i =0;i<n;i++){
+				//fill in row i from the forward arcs out of i
+				for(int a = arcStart[i];a<arcStart[i+1];a++){
+					if((arcs[a] & 1)==0){
+						row[graph.head(arcs[a])]+=edgeValues[arcs[a]>>1];
+					}
+				}
+				writer.append(matrixNodes.get(i));
+				for(int j =0;j<n;j++){
+					writer.append(","+row[j]);
+				}
+				writer.append('\n');
+				Arrays.fill(row, 0);
+			}
+			writer.flush();
+			writer.close();
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+
 
 
 
@@ -168,36 +261,140 @@ public class GameResult {
 	 * @param day
 	 */
 	public void calculateDaysFlow(int day){
+		calculateDaysFlow(day, MaxFlowSolvers.Engine.AUTO);
+	}
 
-		MinCostMaxFlow maxFlow = new MinCostMaxFlow();
+	/**
+	 * runs the max flow algorithm on a day's graph using the given engine
+	 * @param day
+	 * @param engine
+	 */
+	public void calculateDaysFlow(int day, MaxFlowSolvers.Engine engine){
+		FlowGraph graph = FlowGraph.fromMatrix(dailyAdjacencies.getCells(), dailyAdjacencies.getOffset(day),
+				dailyAdjacencies.getNumNodes(day));
+		MaxFlowSolver maxFlow = MaxFlowSolvers.create(engine, graph);
 
-		//construct a cost matrix that is all 1s as required by max flow code
-		int[][] cost = new int[dailyAdjacencies.get(day).length][dailyAdjacencies.get(day).length];
-		for(int r = 0;r<cost.length;r++){
-			Arrays.fill(cost[r], 1);
-		}
 		//run max flow algorithm
-		dailyFlows.put(day, maxFlow.getMaxFlow(dailyAdjacencies.get(day), cost, 0, dailyAdjacencies.get(day).length-1));
-
+		SimulationEvents.MaxFlow event = new SimulationEvents.MaxFlow();
+		event.begin();
+		int[] flow = maxFlow.getMaxFlow(graph, 0, graph.getNumNodes()-1);
+		SimulationEvents.commit(event, pointName, resNumber, day, graph, flow, 0, maxFlow.getClass().getSimpleName());
+		int n = graph.getNumNodes();
+		dailyFlows.allocate(day, n);
+		for(int e = 0;e<graph.getNumEdges();e++){
+			dailyFlows.set(day, graph.getFrom()[e], graph.getTo()[e], flow[e]);
+		}
 	}
 
 	/**
 	 * runs the max flow algorithm to determine the demand on user types 
 	 * and the campaigns whose reach might not be met.
-	 * @param day
 	 */
 	public void calculateMultiDayFlow(){
+		calculateMultiDayFlow(MaxFlowSolvers.Engine.AUTO);
+	}
 
-		MinCostMaxFlow maxFlow = new MinCostMaxFlow();
+	/**
+	 * runs the max flow algorithm on the multiday graph using the given engine
+	 * @param engine
+	 */
+	public void calculateMultiDayFlow(MaxFlowSolvers.Engine engine){
+		calculateMultiDayFlow(engine, false);
+	}
+
+	/**
+	 * runs the max flow algorithm on the multiday graph with a given solver,
+	 * e.g. a WarmStartMaxFlow kept from the same trial of the last point
+	 * @param maxFlow
+	 */
+	public void calculateMultiDayFlow(MaxFlowSolver maxFlow){
+		SimulationEvents.MaxFlow event = new SimulationEvents.MaxFlow();
+		event.begin();
+		multiDayFlow = maxFlow.getMaxFlow(multiDayGraph, 0, multiDayGraph.getNumNodes()-1);
+		SimulationEvents.commit(event, pointName, resNumber, SimulationEvents.MULTIDAY, multiDayGraph, multiDayFlow, 0,
+				maxFlow.getClass().getSimpleName());
+	}
 
-		//construct a cost matrix that is all 1s as required by max flow code
-		int[][] cost = new int[multiDayAdjacencyMatrix.length][multiDayAdjacencyMatrix.length];
-		for(int r = 0;r<cost.length;r++){
-			Arrays.fill(cost[r], 1);
+	/**
+	 * runs the max flow algorithm on the multiday graph using the given engine.
+	 * If contract is set, equivalent user type and campaign nodes are merged
+	 * before solving (see GraphContraction). The flow value is the same but
+	 * which campaigns come up short can differ.
+	 * @param engine
+	 * @param contract
+	 */
+	public void calculateMultiDayFlow(MaxFlowSolvers.Engine engine, boolean contract){
+		int sink = multiDayGraph.getNumNodes()-1;
+		SimulationEvents.MaxFlow event = new SimulationEvents.MaxFlow();
+		if(contract){
+			event.begin();
+			GraphContraction contraction = new GraphContraction(multiDayGraph, 0, sink);
+			multiDayFlow = contraction.getMaxFlow(engine);
+			SimulationEvents.commit(event, pointName, resNumber, SimulationEvents.MULTIDAY, multiDayGraph, multiDayFlow, 0,
+					"GraphContraction "+engine);
+			return;
 		}
+		MaxFlowSolver maxFlow = MaxFlowSolvers.create(engine, multiDayGraph);
+
 		//run max flow algorithm
-		multiDayFlow =  maxFlow.getMaxFlow(multiDayAdjacencyMatrix, cost, 0, multiDayAdjacencyMatrix.length-1);
+		event.begin();
+		multiDayFlow = maxFlow.getMaxFlow(multiDayGraph, 0, sink);
+		SimulationEvents.commit(event, pointName, resNumber, SimulationEvents.MULTIDAY, multiDayGraph, multiDayFlow, 0,
+				maxFlow.getClass().getSimpleName());
+	}
+
+	/**
+	 * drops the daily and multiday graphs and flows, keeping the simulated
+	 * game, so the result takes next to no memory. They are rebuilt the
+	 * next time they are asked for.
+	 */
+	public synchronized void release(){
+		if(released){
+			return;
+		}
+		int numDays = numCampaignsPerDay.length;
+		releasedDailyGraphs = false;
+		for(int d = 0;d<numDays;d++){
+			if(dailyAdjacencies.has(d)){
+				releasedDailyGraphs = true;
+			}
+		}
+		dailyAdjacencies = new DayMatrices(numDays);
+		dailyFlows = new DayMatrices(numDays);
+		unusedFlows = new DayMatrices(numDays);
+		multiDayCampaignRows = null;
+		multiDayGraph = null;
+		multiDayFlow = null;
+		multiDayUnusedFlow = null;
+		released = true;
+	}
+
+	/**
+	 * rebuilds the graphs and flows of a released result
+	 */
+	private synchronized void rehydrate(){
+		if(!released){
+			return;
+		}
+		if(rebuilder==null){
+			throw new IllegalStateException("result "+resNumber+" was released and has nothing to rebuild it");
+		}
+		released = false;
+		try {
+			rebuilder.rebuild(this, releasedDailyGraphs);
+		} catch (RuntimeException e) {
+			//still released, not half rebuilt
+			released = true;
+			throw e;
+		}
+	}
 
+	public boolean isReleased(){
+		return released;
+	}
+
+	public void setRebuilder(Rebuilder rebuilder){
+		this.rebuilder = rebuilder;
 	}
 
 	/**
@@ -207,12 +404,12 @@ public class GameResult {
 	@SuppressWarnings("unused")
 	private void printDailyFlow(int day){
 		System.out.println("Day: "+day);
-		for(int i=0;i<dailyAdjacencies.get(day).length;i++){
-			for(int j=0;j<dailyAdjacencies.get(day).length;j++){
+		for(int i=0;i<dailyAdjacencies.getNumNodes(day);i++){
+			for(int j=0;j<dailyAdjacencies.getNumNodes(day);j++){
 				if(j>0){
 					System.out.print(",");
 				}
-				System.out.print(dailyFlows.get(day)[i][j]);
+				System.out.print(dailyFlows.get(day, i, j));
 			}
 			System.out.println();
 			System.out.println();
@@ -230,23 +427,22 @@ public class GameResult {
 	 * @param day
 	 */
 	public void calcUnusedFlow(int day){
-		int[][] unusedFlow = new int[dailyAdjacencies.get(day).length][dailyAdjacencies.get(day).length];
+		int n = dailyAdjacencies.getNumNodes(day);
+		unusedFlows.allocate(day, n);
 		//adj-flow >0 means excess demand
-		for(int i=0;i<dailyAdjacencies.get(day).length;i++){
-			for(int j=0;j<dailyAdjacencies.get(day).length;j++){
-				unusedFlow[i][j] = dailyAdjacencies.get(day)[i][j]-dailyFlows.get(day)[i][j];
+		for(int i=0;i<n;i++){
+			for(int j=0;j<n;j++){
+				unusedFlows.set(day, i, j, dailyAdjacencies.get(day, i, j)-dailyFlows.get(day, i, j));
 			}
 		}
-		unusedFlows.put(day,unusedFlow);
 	}
 
 	public void calcMultidayUnusedFlow() {
-		int[][] unusedFlow = new int[multiDayAdjacencyMatrix.length][multiDayAdjacencyMatrix.length];
+		int[] cap = multiDayGraph.getCap();
+		int[] unusedFlow = new int[multiDayGraph.getNumEdges()];
 		//adj-flow >0 means excess demand
-		for(int i=0;i<multiDayAdjacencyMatrix.length;i++){
-			for(int j=0;j<multiDayAdjacencyMatrix.length;j++){
-				unusedFlow[i][j] = multiDayAdjacencyMatrix[i][j]-multiDayFlow[i][j];
-			}
+		for(int e=0;e<unusedFlow.length;e++){
+			unusedFlow[e] = cap[e]-multiDayFlow[e];
 		}
 		multiDayUnusedFlow = unusedFlow;
 
@@ -256,8 +452,97 @@ public class GameResult {
 	 * calculates the flow matrix for every day
 	 */
 	public void calculateAllDaysFlow(){
-		for(int d=0;d<dailyAdjacencies.size();d++){
-			calculateDaysFlow(d);
+		calculateAllDaysFlow(MaxFlowSolvers.Engine.AUTO);
+	}
+
+	/**
+	 * calculates the flow matrix for every day using the given engine
+	 * @param engine
+	 */
+	public void calculateAllDaysFlow(MaxFlowSolvers.Engine engine){
+		for(int d=0;d<dailyAdjacencies.getNumDays();d++){
+			if(dailyAdjacencies.has(d)){
+				calculateDaysFlow(d, engine);
+			}
+		}
+	}
+
+	/**
+	 * calculates the flow matrix for every day, in day order, carrying the
+	 * flow of every campaign still running over from the day before. Only
+	 * the flow of campaigns that ended is dropped; the carried flow is
+	 * feasible (source capacities and a campaign's sink capacity don't
+	 * change between days) and Dinic's algorithm augments it for the new
+	 * campaigns.
+	 * 
+	 * Each day's flow value is the same as solving the day from scratch,
+	 * but which campaigns come up short can differ from MinCostMaxFlow's.
+	 */
+	public void calculateAllDaysFlowIncremental(){
+		int numUserTypes = userTypes.length;
+		//flow into each campaign from each user type, and on to the sink, on the last day it was solved
+		int[][] carriedFlow = new int[campaigns.size()][];
+		int[] carriedSinkFlow = new int[campaigns.size()];
+		int[] lastDay = new int[campaigns.size()];
+		Arrays.fill(lastDay, -2);
+
+		DinicMaxFlow maxFlow = new DinicMaxFlow();
+		for(int d=0;d<dailyAdjacencies.getNumDays();d++){
+			if(!dailyAdjacencies.has(d)){
+				continue;
+			}
+			FlowGraph graph = FlowGraph.fromMatrix(dailyAdjacencies.getCells(), dailyAdjacencies.getOffset(d),
+					dailyAdjacencies.getNumNodes(d));
+			int n = graph.getNumNodes();
+			int sink = n-1;
+			int[] from = graph.getFrom();
+			int[] to = graph.getTo();
+
+			//start from the flow of the campaigns that ran yesterday
+			int[] flow = new int[graph.getNumEdges()];
+			int[] userTypeOut = new int[numUserTypes+1];
+			for(int e = 0;e<flow.length;e++){
+				if(from[e]>0 && from[e]<=numUserTypes && to[e]>numUserTypes && to[e]<sink){
+					int row = campaignsHeld.get(d, to[e]-numUserTypes-1);
+					if(lastDay[row]==d-1){
+						flow[e] = carriedFlow[row][from[e]-1];
+						userTypeOut[from[e]]+=flow[e];
+					}
+				}else if(to[e]==sink && from[e]>numUserTypes){
+					int row = campaignsHeld.get(d, from[e]-numUserTypes-1);
+					if(lastDay[row]==d-1){
+						flow[e] = carriedSinkFlow[row];
+					}
+				}
+			}
+			for(int e = 0;e<flow.length;e++){
+				if(from[e]==0 && to[e]<=numUserTypes){
+					flow[e] = userTypeOut[to[e]];
+				}
+			}
+
+			SimulationEvents.MaxFlow event = new SimulationEvents.MaxFlow();
+			event.begin();
+			flow = maxFlow.getMaxFlow(graph, flow, 0, sink);
+			SimulationEvents.commit(event, pointName, resNumber, d, graph, flow, 0, "DinicMaxFlow incremental");
+
+			//store the day's flow and carry it on to tomorrow
+			dailyFlows.allocate(d, n);
+			for(int e = 0;e<flow.length;e++){
+				dailyFlows.set(d, from[e], to[e], flow[e]);
+			}
+			for(int c = 0;c<campaignsHeld.size(d);c++){
+				int row = campaignsHeld.get(d, c);
+				int node = numUserTypes+1+c;
+				if(carriedFlow[row]==null){
+					carriedFlow[row] = new int[numUserTypes];
+				}
+				for(int ut = 0;ut<numUserTypes;ut++){
+					carriedFlow[row][ut] = dailyFlows.get(d, ut+1, node);
+				}
+				carriedSinkFlow[row] = dailyFlows.get(d, node, sink);
+				lastDay[row] = d;
+			}
 		}
 	}
 
@@ -265,12 +550,23 @@ public class GameResult {
 	/*
 	 * The following methods are getters and setters.
 	 */
+	/**
+	 * labels of the nodes of a day's graph: S, the user types,
+	 * the day's campaigns and T
+	 * @param day
+	 * @return
+	 */
 	public ArrayList<String> getNodes(int day) {
-		return nodes.get(day);
-	}
-
-	public void addNodes(int day, ArrayList<String>dayNodes){
-		nodes.put(day,dayNodes);
+		ArrayList<String> dayNodes = new ArrayList<String>();
+		dayNodes.add("S");
+		for(int i = 0; i<userTypes.length;i++){
+			dayNodes.add(userTypes[i]+"_"+day);
+		}
+		for(int c = 0;c<campaignsHeld.size(day);c++){
+			dayNodes.add(campaigns.getLabel(campaignsHeld.get(day, c)));
+		}
+		dayNodes.add("T");
+		return dayNodes;
 	}
 
 	public void addAdjacencyMatrix(int day, int[][] matrix){
@@ -281,65 +577,219 @@ public class GameResult {
 		dailyFlows.put(day, matrix);
 	}
 
+	/**
+	 * number of nodes in a day's graph
+	 * @param day
+	 * @return
+	 */
+	public int getDayNumNodes(int day) {
+		rehydrate();
+		return dailyAdjacencies.getNumNodes(day);
+	}
+
+	public int getDayAdjacency(int day, int i, int j) {
+		rehydrate();
+		return dailyAdjacencies.get(day, i, j);
+	}
+
+	public int getDayFlow(int day, int i, int j) {
+		rehydrate();
+		return dailyFlows.get(day, i, j);
+	}
+
+	public int getUnusedFlow(int day, int i, int j) {
+		rehydrate();
+		return unusedFlows.get(day, i, j);
+	}
+
 	public double getAverageNumCampaigns() {
 
 		return averageNumCampaigns;
 	}
 
-	public HashMap<Integer, ArrayList<String>> getMarketsHeld() {
-		return marketsHeld;
+	public CampaignTable getCampaigns() {
+		return campaigns;
+	}
+
+	public DayLists getCampaignsHeld() {
+		return campaignsHeld;
 	}
 
-	public HashMap<Integer, ArrayList<Integer>> getPercentMarket() {
-		return percentMarket;
+	/**
+	 * number of campaigns running on a day
+	 * @param day
+	 * @return
+	 */
+	public int getNumCampaignsHeld(int day) {
+		return campaignsHeld.size(day);
 	}
 
-	public int[][] getDaysAdjacencyMatrix(int day) { 
-		return dailyAdjacencies.get(day);
+	/**
+	 * row of the c-th campaign running on a day
+	 * @param day
+	 * @param c
+	 * @return
+	 */
+	public int getCampaignHeld(int day, int c) {
+		return campaignsHeld.get(day, c);
+	}
+
+	public int[][] getDaysAdjacencyMatrix(int day) {
+		rehydrate();
+		return dailyAdjacencies.toMatrix(day);
 	}
 
 	public int[][] getUnusedFlow(int day) {
-		return unusedFlows.get(day);
+		rehydrate();
+		return unusedFlows.toMatrix(day);
 	}
 
 
-	public void addMultiDayNodes(ArrayList<String> nodes) {
-		multiDayNodes = nodes;
+	/**
+	 * records which campaign each multiday campaign node stands for. The
+	 * nodes are S, every user type on every day, the campaigns and T.
+	 * @param campaignRows
+	 */
+	public void addMultiDayNodes(int[] campaignRows) {
+		multiDayCampaignRows = campaignRows;
 
 	}
 
+	/**
+	 * labels of the nodes of the multiday graph
+	 * @return
+	 */
 	public ArrayList<String> getMultiDayNodes() {
+		rehydrate();
+		ArrayList<String> multiDayNodes = new ArrayList<String>();
+		multiDayNodes.add("S");
+		for(int d = 0;d<numCampaignsPerDay.length;d++){
+			for(int i = 0; i<userTypes.length;i++){
+				multiDayNodes.add(userTypes[i]+"_"+d);
+			}
+		}
+		for(int row : multiDayCampaignRows){
+			multiDayNodes.add(campaigns.getLabel(row));
+		}
+		multiDayNodes.add("T");
 		return multiDayNodes;
 
 	}
 
+	/**
+	 * the campaign row of a multiday node, or -1 if it isn't a campaign node
+	 * @param node
+	 * @return
+	 */
+	public int getMultiDayCampaignRow(int node) {
+		rehydrate();
+		int c = node-1-numCampaignsPerDay.length*userTypes.length;
+		if(c<0 || c>=multiDayCampaignRows.length){
+			return -1;
+		}
+		return multiDayCampaignRows[c];
+	}
 
 
-	public void addMultiDayAdjacencyMatrix(int[][] graph) {
-		multiDayAdjacencyMatrix = graph;
 
+	public void setPointName(String pointName) {
+		this.pointName = pointName;
 	}
 
-	public int[][] getMultiDayAdjacencyMatrix() {
-		return multiDayAdjacencyMatrix;
+	public String getPointName() {
+		return pointName;
+	}
 
+	public void addMultiDayGraph(FlowGraph graph) {
+		multiDayGraph = graph;
+		multiDayFlow = null;
+		multiDayUnusedFlow = null;
 	}
 
+	public FlowGraph getMultiDayGraph() {
+		rehydrate();
+		return multiDayGraph;
+	}
 
-	public HashMap<Integer, ArrayList<Integer>> getNumDaysCampRun() {
+	/**
+	 * flow on each edge of the multiday graph
+	 * @return
+	 */
+	public int[] getMultiDayEdgeFlow() {
+		rehydrate();
+		return multiDayFlow;
+	}
 
-		return numDaysCampRun;
+	/**
+	 * unused capacity on each edge of the multiday graph
+	 * @return
+	 */
+	public int[] getMultiDayEdgeUnusedFlow() {
+		rehydrate();
+		return multiDayUnusedFlow;
 	}
 
+	/**
+	 * capacity of the edge from each node into the sink (0 if there is none),
+	 * indexed by node. This is what each campaign demanded.
+	 * @return
+	 */
+	public int[] getMultiDaySinkCapacities() {
+		rehydrate();
+		return intoSink(multiDayGraph.getCap());
+	}
+
+	/**
+	 * unused capacity of the edge from each node into the sink, indexed by
+	 * node. This is the reach each campaign didn't get.
+	 * @return
+	 */
+	public int[] getMultiDaySinkUnusedFlow() {
+		rehydrate();
+		return intoSink(multiDayUnusedFlow);
+	}
+
+	private int[] intoSink(int[] edgeValues) {
+		int sink = multiDayGraph.getNumNodes()-1;
+		int[] from = multiDayGraph.getFrom();
+		int[] to = multiDayGraph.getTo();
+		int[] values = new int[multiDayGraph.getNumNodes()];
+		for(int e = 0;e<multiDayGraph.getNumEdges();e++){
+			if(to[e]==sink){
+				values[from[e]]+=edgeValues[e];
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * The matrix versions below build a numNodes x numNodes copy on every
+	 * call, so they are only meant for small games.
+	 */
+	public void addMultiDayAdjacencyMatrix(int[][] graph) {
+		addMultiDayGraph(FlowGraph.fromMatrix(graph));
+
+	}
+
+	public int[][] getMultiDayAdjacencyMatrix() {
+		rehydrate();
+		return multiDayGraph.toMatrix(multiDayGraph.getCap());
+
+	}
+
+
+
 
 	public int[][] getMultiDayFlow() {
+		rehydrate();
 
-		return multiDayFlow;
+		return multiDayGraph.toMatrix(multiDayFlow);
 	}
 
 
 	public int[][] getMultiDayUnsuedFlow() {
-		return multiDayUnusedFlow;
+		rehydrate();
+		return multiDayGraph.toMatrix(multiDayUnusedFlow);
 
 	}
 
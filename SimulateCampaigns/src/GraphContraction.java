@@ -0,0 +1,341 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * GraphContraction shrinks a source / user type / campaign / sink flow graph
+ * before it is solved, and expands the solved flow back onto the original
+ * edges afterwards.
+ *
+ * Two kinds of node are merged:
+ * - "user type" nodes whose only in-edge comes from the source and that
+ *   point at exactly the same set of nodes. Their source capacities add up.
+ * - "campaign" nodes whose only out-edge goes to the sink and that are
+ *   pointed at by exactly the same set of nodes. Their sink capacities add up.
+ * Only nodes whose other edges are uncapacitated (Integer.MAX_VALUE, as in
+ * the multiday graph) are merged, which is what keeps the max flow value the
+ * same. Every member of a merged user type group points at every member of
+ * a merged campaign group, so the flow on a merged edge can be handed back
+ * out to the members in order (northwest corner) and always fits.
+ *
+ * The max flow value is the same as solving the original graph, but which
+ * campaigns end up short can differ, since a max flow isn't unique.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class GraphContraction {
+
+	private FlowGraph original;
+	private int source;
+	private int sink;
+
+	private int[] groupOf; //contracted node of each original node
+	private int[][] members; //original nodes of each contracted node, ascending
+	private boolean[] mergedLeft; //contracted node is a merged user type group
+	private boolean[] mergedRight; //contracted node is a merged campaign group
+
+	private FlowGraph contracted;
+	private int[] contractedEdgeOf; //contracted edge of each original edge
+
+
+	public GraphContraction(FlowGraph graph, int source, int sink){
+		this.original = graph;
+		this.source = source;
+		this.sink = sink;
+		findGroups();
+		buildContractedGraph();
+	}
+
+
+	/**
+	 * groups the user type nodes by their out-neighbours and the campaign
+	 * nodes by their in-neighbours. Every other node is a group on its own.
+	 */
+	private void findGroups(){
+		int n = original.getNumNodes();
+		int m = original.getNumEdges();
+		int[] from = original.getFrom();
+		int[] to = original.getTo();
+		int[] cap = original.getCap();
+
+		int[] inDegree = new int[n];
+		int[] outDegree = new int[n];
+		boolean[] fromSource = new boolean[n];
+		boolean[] toSink = new boolean[n];
+		boolean[] uncapacitated = new boolean[n];
+		Arrays.fill(uncapacitated, true);
+		for(int e = 0;e<m;e++){
+			outDegree[from[e]]++;
+			inDegree[to[e]]++;
+			if(from[e]==source){
+				fromSource[to[e]] = true;
+			}else if(to[e]==sink){
+				toSink[from[e]] = true;
+			}else if(cap[e]!=Integer.MAX_VALUE){
+				uncapacitated[from[e]] = false;
+				uncapacitated[to[e]] = false;
+			}
+		}
+
+		//neighbour lists (out for user types, in for campaigns), sorted by node
+		int[][] outNodes = new int[n][];
+		int[][] inNodes = new int[n][];
+		for(int v = 0;v<n;v++){
+			outNodes[v] = new int[outDegree[v]];
+			inNodes[v] = new int[inDegree[v]];
+		}
+		int[] outUsed = new int[n];
+		int[] inUsed = new int[n];
+		for(int e = 0;e<m;e++){
+			outNodes[from[e]][outUsed[from[e]]++] = to[e];
+			inNodes[to[e]][inUsed[to[e]]++] = from[e];
+		}
+
+		groupOf = new int[n];
+		int[] groupSize = new int[n];
+		int[] kind = new int[n]; //0 alone, 1 user type group, 2 campaign group
+		HashMap<Signature,Integer> leftGroups = new HashMap<Signature,Integer>();
+		HashMap<Signature,Integer> rightGroups = new HashMap<Signature,Integer>();
+		int numGroups = 0;
+		for(int v = 0;v<n;v++){
+			int group = -1;
+			if(v!=source && v!=sink && uncapacitated[v]){
+				if(inDegree[v]==1 && fromSource[v] && !toSink[v]){
+					Arrays.sort(outNodes[v]);
+					Signature signature = new Signature(outNodes[v]);
+					Integer known = leftGroups.get(signature);
+					if(known==null){
+						leftGroups.put(signature, numGroups);
+					}else{
+						group = known;
+					}
+					kind[v] = 1;
+				}else if(outDegree[v]==1 && toSink[v] && !fromSource[v]){
+					Arrays.sort(inNodes[v]);
+					Signature signature = new Signature(inNodes[v]);
+					Integer known = rightGroups.get(signature);
+					if(known==null){
+						rightGroups.put(signature, numGroups);
+					}else{
+						group = known;
+					}
+					kind[v] = 2;
+				}
+			}
+			if(group==-1){
+				group = numGroups++;
+			}
+			groupOf[v] = group;
+			groupSize[group]++;
+		}
+
+		members = new int[numGroups][];
+		mergedLeft = new boolean[numGroups];
+		mergedRight = new boolean[numGroups];
+		for(int g = 0;g<numGroups;g++){
+			members[g] = new int[groupSize[g]];
+			groupSize[g] = 0;
+		}
+		for(int v = 0;v<n;v++){
+			int g = groupOf[v];
+			members[g][groupSize[g]++] = v;
+			if(members[g].length>1){
+				mergedLeft[g] = kind[v]==1;
+				mergedRight[g] = kind[v]==2;
+			}
+		}
+	}
+
+	/**
+	 * maps every original edge onto an edge between groups. Parallel edges
+	 * into or out of a merged group become one edge with the capacities added
+	 * (capped at Integer.MAX_VALUE).
+	 */
+	private void buildContractedGraph(){
+		int m = original.getNumEdges();
+		int[] from = original.getFrom();
+		int[] to = original.getTo();
+		int[] cap = original.getCap();
+
+		HashMap<Long,Integer> edgeIndex = new HashMap<Long,Integer>();
+		int[] cFrom = new int[m];
+		int[] cTo = new int[m];
+		long[] cCap = new long[m];
+		contractedEdgeOf = new int[m];
+		int numEdges = 0;
+		for(int e = 0;e<m;e++){
+			int a = groupOf[from[e]];
+			int b = groupOf[to[e]];
+			int ce = -1;
+			if(members[a].length>1 || members[b].length>1){
+				Long key = ((long)a<<32) | b;
+				Integer known = edgeIndex.get(key);
+				if(known==null){
+					edgeIndex.put(key, numEdges);
+				}else{
+					ce = known;
+				}
+			}
+			if(ce==-1){
+				ce = numEdges++;
+				cFrom[ce] = a;
+				cTo[ce] = b;
+			}
+			cCap[ce] += cap[e];
+			contractedEdgeOf[e] = ce;
+		}
+
+		int[] finalCap = new int[numEdges];
+		for(int ce = 0;ce<numEdges;ce++){
+			finalCap[ce] = (int) Math.min(cCap[ce], Integer.MAX_VALUE);
+		}
+		contracted = new FlowGraph(members.length, Arrays.copyOf(cFrom, numEdges), Arrays.copyOf(cTo, numEdges), finalCap);
+	}
+
+
+	/**
+	 * hands the flow on each contracted edge back out to the original edges.
+	 * The source flow into a user type group is split over its members in
+	 * node order, each taking up to its own capacity, and the same for the
+	 * sink flow out of a campaign group. Flow between groups is then matched
+	 * up member by member against what each member has left.
+	 * @param contractedFlow flow on each edge of getContractedGraph()
+	 * @return flow on each edge of the original graph
+	 */
+	public int[] expandFlow(int[] contractedFlow){
+		int n = original.getNumNodes();
+		int m = original.getNumEdges();
+		int[] from = original.getFrom();
+		int[] to = original.getTo();
+		int[] cap = original.getCap();
+
+		int[] flow = new int[m];
+		int[] remaining = new int[contracted.getNumEdges()];
+		System.arraycopy(contractedFlow, 0, remaining, 0, remaining.length);
+
+		//flow each member of a merged group still has to pass on
+		int[] budget = new int[n];
+
+		//original edge between each pair of members, for middle edges touching a group
+		HashMap<Long,Integer> edgeOf = new HashMap<Long,Integer>();
+
+		for(int e = 0;e<m;e++){
+			int a = groupOf[from[e]];
+			int b = groupOf[to[e]];
+			int ce = contractedEdgeOf[e];
+			if(members[a].length==1 && members[b].length==1){
+				//neither end was merged, the edge keeps its flow as is
+				flow[e] = contractedFlow[ce];
+			}else if(from[e]==source || to[e]==sink){
+				//source edge of a user type group or sink edge of a campaign
+				//group, split in edge (so member) order
+				int f = Math.min(cap[e], remaining[ce]);
+				flow[e] = f;
+				remaining[ce] -= f;
+				budget[from[e]==source ? to[e] : from[e]] = f;
+			}else{
+				Long key = ((long)from[e]<<32) | to[e];
+				if(!edgeOf.containsKey(key)){
+					edgeOf.put(key, e);
+				}
+			}
+		}
+
+		//hand out each merged middle edge's flow member by member
+		int[] cFrom = contracted.getFrom();
+		int[] cTo = contracted.getTo();
+		for(int ce = 0;ce<contracted.getNumEdges();ce++){
+			int a = cFrom[ce];
+			int b = cTo[ce];
+			if(a==groupOf[source] || b==groupOf[sink] || (members[a].length==1 && members[b].length==1)){
+				continue;
+			}
+			int left = contractedFlow[ce];
+			int i = 0;
+			int j = 0;
+			while(left>0){
+				int u = members[a][i];
+				int w = members[b][j];
+				int uHas = mergedLeft[a] ? budget[u] : left;
+				int wWants = mergedRight[b] ? budget[w] : left;
+				if(uHas==0){
+					i++;
+					continue;
+				}
+				if(wWants==0){
+					j++;
+					continue;
+				}
+				int f = Math.min(left, Math.min(uHas, wWants));
+				flow[edgeOf.get(((long)u<<32) | w)] += f;
+				if(mergedLeft[a]){
+					budget[u] -= f;
+				}
+				if(mergedRight[b]){
+					budget[w] -= f;
+				}
+				left -= f;
+			}
+		}
+		return flow;
+	}
+
+	/**
+	 * solves the contracted graph with the given engine and expands the flow
+	 * @param engine
+	 * @return flow on each edge of the original graph
+	 */
+	public int[] getMaxFlow(MaxFlowSolvers.Engine engine){
+		MaxFlowSolver solver = MaxFlowSolvers.create(engine, contracted);
+		return expandFlow(solver.getMaxFlow(contracted, groupOf[source], groupOf[sink]));
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public FlowGraph getContractedGraph(){
+		return contracted;
+	}
+
+	public int getContractedSource(){
+		return groupOf[source];
+	}
+
+	public int getContractedSink(){
+		return groupOf[sink];
+	}
+
+	/**
+	 * contracted node of each original node
+	 * @return
+	 */
+	public int[] getGroupOf(){
+		return groupOf;
+	}
+
+
+	/**
+	 * a sorted neighbour list used as a hash key
+	 */
+	private static class Signature {
+		int[] nodes;
+		int hash;
+
+		Signature(int[] nodes){
+			this.nodes = nodes;
+			this.hash = Arrays.hashCode(nodes);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			return other instanceof Signature && Arrays.equals(nodes, ((Signature)other).nodes);
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+/**
+ * A MaxFlowSolver computes a maximum flow from source to sink in a
+ * FlowGraph. Every edge costs 1, which is all the experiments need, so
+ * no cost matrix is passed in.
+ *
+ * Use MaxFlowSolvers to pick an engine for a graph.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public interface MaxFlowSolver {
+
+	/**
+	 * @param graph
+	 * @param source
+	 * @param sink
+	 * @return the flow on every edge, indexed like the graph's edge list
+	 */
+	int[] getMaxFlow(FlowGraph graph, int source, int sink);
+
+}
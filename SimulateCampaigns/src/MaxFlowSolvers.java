@@ -0,0 +1,84 @@
+/**
+ * MaxFlowSolvers picks a max flow engine for a graph. The daily graphs
+ * have a few dozen nodes and are fairly dense, while the multiday graph
+ * has hundreds or thousands of nodes and almost no edges per node, so no
+ * single engine is best for both.
+ *
+ * DENSE, SPARSE and AUTO all give exactly the flows MinCostMaxFlow gives.
+ * UNIT and PARALLEL give a maximum flow of the same value, but may split it
+ * between campaigns differently (PARALLEL differently from run to run), so
+ * AUTO only ever picks DENSE or SPARSE and the others are only used when
+ * asked for.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class MaxFlowSolvers {
+
+	public enum Engine {
+		AUTO, //choose DENSE or SPARSE from the node and edge counts
+		DENSE, //MinCostMaxFlow, adjacency matrix
+		SPARSE, //SparseMaxFlow, same augmenting paths on an edge list
+		UNIT, //DinicMaxFlow, pure max flow with no costs
+		PARALLEL //ParallelPushRelabel, uses every core
+	}
+
+	//graphs this small are solved fastest on a matrix
+	static final int SMALL_GRAPH_NODES = 64;
+	//graphs with more than 1 edge in DENSE_GRAPH_FRACTION cells stay on a matrix
+	static final int DENSE_GRAPH_FRACTION = 4;
+
+
+	/**
+	 * picks the engine AUTO stands for on this graph, always one that gives
+	 * MinCostMaxFlow's flows, so the choice never changes a trial's stats
+	 * @param graph
+	 * @return
+	 */
+	public static Engine choose(FlowGraph graph){
+		long nodes = graph.getNumNodes();
+		long edges = graph.getNumEdges();
+
+		if(nodes<=SMALL_GRAPH_NODES){
+			return Engine.DENSE;
+		}
+		if(edges*DENSE_GRAPH_FRACTION>=nodes*nodes){
+			return Engine.DENSE;
+		}
+		return Engine.SPARSE;
+	}
+
+	/**
+	 * true if the engine always gives MinCostMaxFlow's flows, so a trial's
+	 * stats don't depend on which of these engines solved it
+	 * @param engine
+	 * @return
+	 */
+	public static boolean isExact(Engine engine){
+		return engine==null || engine==Engine.AUTO || engine==Engine.DENSE || engine==Engine.SPARSE;
+	}
+
+	/**
+	 * creates a solver for the graph. AUTO is resolved with choose(graph),
+	 * any other engine is used as is.
+	 * @param engine
+	 * @param graph
+	 * @return
+	 */
+	public static MaxFlowSolver create(Engine engine, FlowGraph graph){
+		if(engine==null || engine==Engine.AUTO){
+			engine = choose(graph);
+		}
+		switch(engine){
+		case DENSE:
+			return new MinCostMaxFlow();
+		case UNIT:
+			return new DinicMaxFlow();
+		case PARALLEL:
+			return new ParallelPushRelabel();
+		default:
+			return new SparseMaxFlow();
+		}
+	}
+
+}
@@ -24,15 +24,24 @@
 //
 //   MinCostMaxFlow nf;
 //   int maxflow = nf.getMaxFlow(cap,cost,source,sink);
+//
+// As a MaxFlowSolver (getMaxFlow(graph,source,sink)) every edge costs 1
+// and no cost matrix is allocated; the flows are the same as passing an
+// all-ones cost matrix.
 
 import java.util.*;
 
-public class MinCostMaxFlow {
+public class MinCostMaxFlow implements MaxFlowSolver {
 	boolean found[];
 	int N, cap[][], flow[][], cost[][], dad[], dist[], pi[];
 
 	static final int INF = Integer.MAX_VALUE / 2 - 1;
 
+	//a null cost matrix means every edge costs 1
+	int cost(int i, int j) {
+		return cost == null ? 1 : cost[i][j];
+	}
+
 	boolean search(int source, int sink) {
 		Arrays.fill(found, false);
 		Arrays.fill(dist, INF);
@@ -44,14 +53,14 @@ public class MinCostMaxFlow {
 			for (int k = 0; k < N; k++) {
 				if (found[k]) continue;
 				if (flow[k][source] != 0) {
-					int val = dist[source] + pi[source] - pi[k] - cost[k][source];
+					int val = dist[source] + pi[source] - pi[k] - cost(k, source);
 					if (dist[k] > val) {
 						dist[k] = val;
 						dad[k] = source;
 					}
 				}
 				if (flow[source][k] < cap[source][k]) {
-					int val = dist[source] + pi[source] - pi[k] + cost[source][k];
+					int val = dist[source] + pi[source] - pi[k] + cost(source, k);
 					if (dist[k] > val) {
 						dist[k] = val;
 						dad[k] = source;
@@ -81,7 +90,9 @@ public class MinCostMaxFlow {
 
 		@SuppressWarnings("unused")
 		int totflow = 0, totcost = 0;
+		long paths = 0;
 		while (search(source, sink)) {
+			paths++;
 			int amt = INF;
 			for (int x = sink; x != source; x = dad[x])
 				amt = Math.min(amt, flow[x][dad[x]] != 0 ? flow[x][dad[x]] :
@@ -89,19 +100,31 @@ public class MinCostMaxFlow {
 			for (int x = sink; x != source; x = dad[x]) {
 				if (flow[x][dad[x]] != 0) {
 					flow[x][dad[x]] -= amt;
-					totcost -= amt * cost[x][dad[x]];
+					totcost -= amt * cost(x, dad[x]);
 				} else {
 					flow[dad[x]][x] += amt;
-					totcost += amt * cost[dad[x]][x];
+					totcost += amt * cost(dad[x], x);
 				}
 			}
 			totflow += amt;
 		}
 
+		PhaseMetrics.addIterations(paths);
 		//return new int[]{ totflow, totcost };
 		return flow;
 	}
 
+	/**
+	 * runs max flow with unit costs on a graph and returns the flow on each edge
+	 */
+	public int[] getMaxFlow(FlowGraph graph, int source, int sink) {
+		int[][] flowMatrix = getMaxFlow(graph.toMatrix(graph.getCap()), null, source, sink);
+		int[] edgeFlow = new int[graph.getNumEdges()];
+		for (int e = 0; e < edgeFlow.length; e++)
+			edgeFlow[e] = flowMatrix[graph.getFrom()[e]][graph.getTo()[e]];
+		return edgeFlow;
+	}
+
 	public static void main (String args[]){
 		MinCostMaxFlow flow = new MinCostMaxFlow();
 		int cap[][] = {{0, 3, 4, 5, 0},
@@ -0,0 +1,285 @@
+// Multi-threaded push-relabel max flow for very large graphs.
+//
+// This is the lock-free push-relabel algorithm of Hong and He: every
+// vertex is owned by one worker thread, only the owner lowers the excess
+// or the residual capacities leaving its vertex, and everything that other
+// threads can touch lives in atomic arrays. A push always goes to the
+// lowest residual neighbour and a relabel sets the height to one more than
+// that neighbour, which keeps the algorithm correct even when the heights
+// a thread reads are stale.
+//
+// Work is done in rounds. Before every round a global relabel recomputes
+// exact heights with a backwards BFS from the sink (and, for vertices that
+// can no longer reach the sink, N plus the BFS distance to the source), then
+// all threads discharge their active vertices until too many local
+// relabels have happened or they run out of work. The algorithm stops when
+// no vertex other than the source and sink holds excess, so the result is
+// a real flow and not just a preflow.
+//
+// INPUT: graph -- a FlowGraph, or a matrix such that cap[i][j] is the
+//                capacity of a directed edge from node i to node j
+//
+//        source -- starting node
+//        sink -- ending node
+//
+// OUTPUT: the flow on every edge, as a matrix (same shape as cap) or as an
+//         array indexed like the graph's edge list. The flow value is
+//         maximum, but when there are several maximum flows the one found
+//         can differ from the one MinCostMaxFlow finds.
+//
+// To use this, create a ParallelPushRelabel object, and call it like this:
+//
+//   ParallelPushRelabel nf = new ParallelPushRelabel(numThreads);
+//   int[][] flow = nf.getMaxFlow(cap,source,sink);
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ParallelPushRelabel implements MaxFlowSolver {
+	int numThreads;
+	int N, M, source, sink, from[], to[];
+	int arcStart[], arcs[];
+	AtomicIntegerArray residual; //residual[2e] = cap-flow, residual[2e+1] = flow
+	AtomicIntegerArray height;
+	AtomicLongArray excess;
+	AtomicInteger relabels;
+	int relabelLimit;
+
+
+	public ParallelPushRelabel(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelPushRelabel(int numThreads){
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+
+	/**
+	 * takes the residual arcs from the graph. Every edge e contributes a
+	 * forward arc (2e) out of from[e] and a backward arc (2e+1) out of to[e].
+	 */
+	private void buildGraph(FlowGraph graph) {
+		N = graph.getNumNodes();
+		M = graph.getNumEdges();
+		from = graph.getFrom();
+		to = graph.getTo();
+		arcStart = graph.getArcStart();
+		arcs = graph.getArcs();
+
+		int[] cap = graph.getCap();
+		residual = new AtomicIntegerArray(2*M);
+		for (int e = 0; e < M; e++)
+			residual.set(e << 1, cap[e]);
+		height = new AtomicIntegerArray(N);
+		excess = new AtomicLongArray(N);
+		relabels = new AtomicInteger();
+	}
+
+	private int head(int arc) {
+		return (arc & 1) == 0 ? to[arc >> 1] : from[arc >> 1];
+	}
+
+	/**
+	 * recomputes exact heights: distance to the sink in the residual graph,
+	 * or N + distance to the source for vertices that can't reach the sink.
+	 * Only called while no worker is running.
+	 */
+	private void globalRelabel() {
+		int[] h = new int[N];
+		Arrays.fill(h, -1);
+		int[] queue = new int[N];
+
+		h[sink] = 0;
+		h[source] = N;
+		bfs(h, queue, sink);
+		bfs(h, queue, source);
+
+		for (int v = 0; v < N; v++) {
+			//unreachable from both sides, can't hold excess
+			height.set(v, h[v] == -1 ? 2*N : h[v]);
+		}
+		relabels.set(0);
+	}
+
+	/**
+	 * labels every unlabeled vertex that can reach root with h[root] + its distance
+	 */
+	private void bfs(int[] h, int[] queue, int root) {
+		int qHead = 0, qTail = 0;
+		queue[qTail++] = root;
+		while (qHead < qTail) {
+			int w = queue[qHead++];
+			for (int a = arcStart[w]; a < arcStart[w+1]; a++) {
+				int u = head(arcs[a]);
+				//u can reach w if the arc u->w (the partner of a) has capacity left
+				if (h[u] == -1 && residual.get(arcs[a] ^ 1) > 0) {
+					h[u] = h[w] + 1;
+					queue[qTail++] = u;
+				}
+			}
+		}
+	}
+
+	/**
+	 * pushes and relabels u until it has no excess left. Returns the number
+	 * of operations performed.
+	 */
+	private int discharge(int u) {
+		int work = 0;
+		long e = excess.get(u);
+		while (e > 0) {
+			int bestArc = -1;
+			int bestHeight = Integer.MAX_VALUE;
+			for (int a = arcStart[u]; a < arcStart[u+1]; a++) {
+				if (residual.get(arcs[a]) > 0) {
+					int hw = height.get(head(arcs[a]));
+					if (hw < bestHeight) {
+						bestHeight = hw;
+						bestArc = arcs[a];
+					}
+				}
+			}
+			if (bestArc == -1) break;
+
+			if (height.get(u) > bestHeight) {
+				//push to the lowest neighbour
+				int amt = (int)Math.min(e, residual.get(bestArc));
+				residual.addAndGet(bestArc, -amt);
+				residual.addAndGet(bestArc ^ 1, amt);
+				excess.addAndGet(head(bestArc), amt);
+				e = excess.addAndGet(u, -amt);
+			} else {
+				//relabel to one above it
+				height.set(u, bestHeight + 1);
+				relabels.incrementAndGet();
+				e = excess.get(u);
+			}
+			work++;
+		}
+		return work;
+	}
+
+	/**
+	 * a worker owns every vertex v with v % numThreads == id
+	 */
+	private class Worker implements Callable<Integer> {
+		int id, stride;
+
+		Worker(int id, int stride) {
+			this.id = id;
+			this.stride = stride;
+		}
+
+		public Integer call() {
+			int work = 0;
+			boolean active = true;
+			while (active && relabels.get() < relabelLimit) {
+				active = false;
+				for (int v = id; v < N; v += stride) {
+					if (v == source || v == sink || excess.get(v) <= 0) continue;
+					active = true;
+					work += discharge(v);
+				}
+			}
+			return work;
+		}
+	}
+
+	private boolean hasActiveVertex() {
+		for (int v = 0; v < N; v++) {
+			if (v != source && v != sink && excess.get(v) > 0) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * runs max flow on a graph and returns the flow on each edge
+	 */
+	public int[] getMaxFlow(FlowGraph graph, int source, int sink) {
+		buildGraph(graph);
+		this.source = source;
+		this.sink = sink;
+		relabelLimit = N;
+
+		//saturate every edge out of the source
+		for (int a = arcStart[source]; a < arcStart[source+1]; a++) {
+			if ((arcs[a] & 1) == 0 && head(arcs[a]) != source) {
+				int amt = residual.get(arcs[a]);
+				residual.addAndGet(arcs[a], -amt);
+				residual.addAndGet(arcs[a] ^ 1, amt);
+				excess.addAndGet(head(arcs[a]), amt);
+			}
+		}
+
+		int threads = Math.min(numThreads, Math.max(1, N/64));
+		ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		long work = 0;
+		try {
+			while (hasActiveVertex()) {
+				globalRelabel();
+				if (pool == null) {
+					work += new Worker(0, 1).call();
+				} else {
+					ArrayList<Future<Integer>> round = new ArrayList<Future<Integer>>();
+					for (int t = 0; t < threads; t++) {
+						round.add(pool.submit(new Worker(t, threads)));
+					}
+					for (Future<Integer> f : round) {
+						work += f.get();
+					}
+				}
+			}
+			PhaseMetrics.addIterations(work);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		int[] flow = new int[M];
+		for (int e = 0; e < M; e++)
+			flow[e] = residual.get((e << 1) | 1);
+		return flow;
+	}
+
+	/**
+	 * runs max flow on a capacity matrix and returns the flow matrix.
+	 * Only the non-zero cells of cap become edges.
+	 */
+	int[][] getMaxFlow(int cap[][], int source, int sink) {
+		FlowGraph graph = FlowGraph.fromMatrix(cap);
+		return graph.toMatrix(getMaxFlow(graph, source, sink));
+	}
+
+	public static void main (String args[]){
+		ParallelPushRelabel flow = new ParallelPushRelabel();
+		int cap[][] = {{0, 3, 4, 5, 0},
+				{0, 0, 2, 0, 0},
+				{0, 0, 0, 4, 1},
+				{0, 0, 0, 0, 10},
+				{0, 0, 0, 0, 0}};
+
+		int[][] flowSolution = flow.getMaxFlow(cap, 0, 4);
+		for(int i=0;i<flowSolution.length;i++){
+			for(int j=0;j<flowSolution[0].length;j++){
+				System.out.print(flowSolution[i][j]+" ");
+			}
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,1064 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParameterSweep runs a DemandAndCompetitivenessExperiment for every point
+ * of a grid of lengths (l1,l2,l3) and percents (p1,p2,p3). Every grid point
+ * is its own task with its own experiment, stats and arrays, and the tasks
+ * run on a work-stealing ForkJoinPool. A point's line is written to
+ * summaryRes.csv as soon as it finishes, so lines come out in finishing
+ * order rather than grid order.
+ *
+ * The trial seeds of every point are drawn up front, in grid order, from
+ * one random, the same way the old sequential loop drew them from the
+ * experiment's random. Each point's results are the same for any number
+ * of threads.
+ *
+ * A sweep can also be split over several processes or machines: each
+ * worker runs the points of its shard (point % numShards == shard, or
+ * with warm start whole chains of points dealt out the same way) and
+ * writes their raw stats to a shard file, and merge() adds the shard files
+ * back up into summaryRes.csv and every point's finalResults.csv. The
+ * coordinator starts the workers as local JVMs and merges when they are
+ * done. It writes its settings (grid, seed, engine and every flag) to
+ * sweep.properties, and the workers run from that file rather than from
+ * main's, so they run the coordinator's grid. A worker checks its settings
+ * against the checkpoint header the coordinator wrote before it runs.
+ *
+ * With warm start on, every point runs the same trial seeds. Points that
+ * only differ in percents then share each trial's multiday graph edges, so
+ * they are run one after another and each trial's max flow replays what it
+ * can of its solve at the point before (see WarmStartMaxFlow). The flows
+ * are exactly the exact engines', so warm start only changes how long a
+ * sweep takes; it can't be used with UNIT, PARALLEL or contracted graphs.
+ *
+ * Every finished point is recorded in checkpoint.csv (or the worker's shard
+ * file), and a sweep restarted with the same name and settings only runs
+ * the points that aren't there. All trial seeds come from the recorded
+ * seed up front, so the points it runs get the same seeds as they would
+ * have in one uninterrupted run. With warm start a chain only counts as
+ * done once all of its points are, and a partly done chain is run again
+ * from its start, so every point starts from the same flows it would have.
+ * The files are rewritten to the side and renamed over the old ones, so a
+ * sweep stopped while resuming still has its checkpoint.
+ *
+ * With splittable random on, a trial's seed is worked out from the seed,
+ * the point's lengths and percents and the trial number (see
+ * SplitMix64Random) instead of being drawn in grid order, so any trial can
+ * be run again on its own with replayTrial.
+ *
+ * With a target precision each point runs only as many trials (up to
+ * numTrials) as it takes for its confidence intervals to get narrow enough,
+ * and the number it ran is the last column of its results.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class ParameterSweep {
+
+	String experimentName;
+	String baseFolder;
+	int numTrials;
+	long seed; //-1 means no seed
+	boolean calcDailyFlows;
+
+	MaxFlowSolvers.Engine solverEngine = MaxFlowSolvers.Engine.AUTO;
+	boolean contractGraphs = false;
+	int trialThreads = 1; //trials run at once inside a grid point
+	int sweepThreads = Runtime.getRuntime().availableProcessors(); //grid points run at once
+	boolean sharedTrialSeeds = false; //every point runs the same games (the same trial seeds)
+	boolean warmStart = false; //reuse each trial's multiday flow between points with the same lengths
+	boolean incrementalDailyFlows = false; //carry daily flows from one day to the next
+	boolean commonRandomNumbers = false; //trial t of every point plays the same campaign draws
+	int writeQueueSize = 64; //results waiting for the writer thread, 0 writes on the sweep threads
+	boolean splittableRandom = false; //trial seeds from (seed, point, trial) and SplitMix64Random games
+	boolean ephemeralResults = false; //release each trial's graphs and flows once printed
+	boolean collectMetrics = false; //time the phases of every trial, per point and for the sweep
+	ResultCache resultCache; //stats of trials already run, by this sweep or others
+	boolean resume = true; //skip the points a stopped sweep of the same settings finished
+	boolean binaryOutput = false; //trials write sparse multiday.bin files instead of dense csvs
+	double targetPrecision = 0.0; //above 0, points stop adding trials once their CIs are this narrow
+	int minTrials = 1; //fewest trials a point runs with a target precision
+
+	//grid bounds (inclusive) and step sizes
+	int[] minLengths = {10,10,10};
+	int[] maxLengths = {10,10,10};
+	int lInc = 2;
+	int[] minPercents = {34,34,34};
+	int[] maxPercents = {40,40,40};
+	int pInc = 2;
+
+	//set up by buildGrid()
+	private ArrayList<int[]> gridLengths;
+	private ArrayList<int[]> gridPercents;
+	private long[][] pointSeeds;
+	private CampaignDraws[] trialDraws; //shared by every point with common random numbers
+	private Writer overallWriter; //summaryRes.csv when running the whole grid
+	private Writer shardWriter; //shard file when running as a worker
+	private Writer checkpointWriter; //checkpoint.csv when running the whole grid
+	private PhaseMetrics sweepMetrics; //every point's metrics added up
+	private ResultWriter resultWriter; //writes the output files while points run, if there is one
+
+
+	public ParameterSweep(String experimentName, String baseFolder, int numTrials, long seed, boolean calcDailyFlows){
+		this.experimentName = experimentName;
+		this.baseFolder = baseFolder;
+		this.numTrials = numTrials;
+		this.seed = seed;
+		this.calcDailyFlows = calcDailyFlows;
+	}
+
+
+	/**
+	 * lists the grid points in the order the nested loops visit them
+	 */
+	private void buildGrid(){
+		//warm started flows are the exact engines' flows of the whole graph
+		if(warmStart && (!MaxFlowSolvers.isExact(solverEngine) || contractGraphs)){
+			throw new IllegalStateException("warm start gives the flows of the exact engines on uncontracted graphs, not "
+					+solverEngine+(contractGraphs ? " on contracted graphs" : ""));
+		}
+		gridLengths = new ArrayList<int[]>();
+		gridPercents = new ArrayList<int[]>();
+		for(int l1=minLengths[0];l1<=maxLengths[0];l1+=lInc){
+			for(int l2=minLengths[1];l2<=maxLengths[1];l2+=lInc){
+				for(int l3=minLengths[2];l3<=maxLengths[2];l3+=lInc){
+
+					for(int p1=minPercents[0];p1<=maxPercents[0];p1+=pInc){
+						for(int p2=minPercents[1];p2<=maxPercents[1];p2+=pInc){
+							for(int p3=minPercents[2];p3<=maxPercents[2];p3+=pInc){
+								gridLengths.add(new int[]{l1,l2,l3});
+								gridPercents.add(new int[]{p1,p2,p3});
+							}
+						}
+					}
+				}
+			}
+		}
+
+		Random random;
+		if(seed!=-1){
+			random = new Random(seed);
+		}else{
+			random = new Random();
+		}
+		long streamSeed = seed!=-1 ? seed : random.nextLong();
+		pointSeeds = new long[gridLengths.size()][numTrials];
+		for(int point = 0;point<pointSeeds.length;point++){
+			if(sharedTrialSeeds && point>0){
+				pointSeeds[point] = pointSeeds[0];
+				continue;
+			}
+			for(int t = 0;t<numTrials;t++){
+				if(splittableRandom){
+					pointSeeds[point][t] = trialSeed(gridLengths.get(point), gridPercents.get(point), t+1, streamSeed);
+				}else{
+					pointSeeds[point][t] = random.nextLong();
+				}
+			}
+		}
+
+		trialDraws = null;
+		if(commonRandomNumbers){
+			DemandAndCompetitivenessExperiment setup = new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials, seed, calcDailyFlows);
+			setup.setSplittableRandom(splittableRandom);
+			trialDraws = new CampaignDraws[numTrials];
+			for(int t = 0;t<numTrials;t++){
+				trialDraws[t] = setup.drawGame(pointSeeds[0][t], minLengths.length, minPercents.length);
+			}
+		}
+	}
+
+	/**
+	 * runs every grid point and writes baseFolder/experimentName/summaryRes.csv.
+	 * Each finished point's raw stats also go in checkpoint.csv, headed by
+	 * the sweep's seed and settings. With resume on, a sweep that finds a
+	 * checkpoint of the same settings picks up its seed, writes the
+	 * finished points' summary lines back out and only runs the rest.
+	 */
+	public void run(){
+		String folder = baseFolder+"/"+experimentName;
+		new File(folder).mkdirs();
+		try {
+			boolean resuming = resume && readCheckpoint(folder+"/checkpoint.csv");
+			if(seed==-1){
+				//a seed is needed to resume, so pick one and record it
+				seed = new Random().nextLong();
+			}
+			System.out.println("Sweep seed: "+seed);
+			buildGrid();
+			boolean[] mine = new boolean[gridLengths.size()];
+			Arrays.fill(mine, true);
+			ArrayList<String> finished = null;
+			if(resuming){
+				finished = wholeChains(readPointLines(folder+"/checkpoint.csv"), mine);
+			}
+
+			//written to the side and renamed, so the old files are there until the new ones are whole
+			overallWriter = new BufferedWriter(new FileWriter(folder+"/summaryRes.csv.tmp"));
+			checkpointWriter = new BufferedWriter(new FileWriter(folder+"/checkpoint.csv.tmp"));
+			checkpointWriter.append(checkpointHeader()+"\n");
+			boolean[] done = new boolean[gridLengths.size()];
+			if(finished!=null){
+				System.out.println("Resuming, "+finished.size()+" of "+done.length+" points already done");
+				for(String line : finished){
+					int comma = line.indexOf(',');
+					int point = Integer.parseInt(line.substring(0, comma));
+					DemandAndCompetitivenessExperiment experiment = new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials, seed, calcDailyFlows);
+					experiment.addStatsLine(line.substring(comma+1));
+					experiment.setParamName(gridPercents.get(point), gridLengths.get(point));
+					experiment.outputOverallResults(overallWriter);
+					checkpointWriter.append(line+"\n");
+					done[point] = true;
+				}
+			}
+			overallWriter.close();
+			checkpointWriter.close();
+			replace(folder+"/summaryRes.csv");
+			replace(folder+"/checkpoint.csv");
+			overallWriter = new BufferedWriter(new FileWriter(folder+"/summaryRes.csv", true));
+			checkpointWriter = new BufferedWriter(new FileWriter(folder+"/checkpoint.csv", true));
+
+			runPointsWriting(notDone(done), "metricsSummary.csv");
+
+			overallWriter.flush();
+			overallWriter.close();
+			checkpointWriter.flush();
+			checkpointWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * runs the grid points of one shard and writes each point's raw stats,
+	 * as it finishes, to baseFolder/experimentName/shard_shard_of_numShards.csv.
+	 * With resume on, points already in the shard file are skipped. If a
+	 * coordinator left a checkpoint header, this sweep's seed and settings
+	 * have to match it, otherwise nothing is run.
+	 * @param shard
+	 * @param numShards
+	 */
+	public void runShard(int shard, int numShards){
+		try {
+			readCheckpoint(baseFolder+"/"+experimentName+"/checkpoint.csv");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		if(seed==-1){
+			throw new IllegalStateException("workers need a seed, or a coordinator's checkpoint to take it from");
+		}
+		buildGrid();
+		try {
+			File file = new File(baseFolder+"/"+experimentName);
+
+			file.mkdirs();
+			boolean[] mine = shardPoints(shard, numShards);
+			String fileName = shardFileName(shard, numShards);
+			ArrayList<String> finished = new ArrayList<String>();
+			if(resume && new File(fileName).exists()){
+				finished = wholeChains(readPointLines(fileName), mine);
+			}
+			//written back out whole, in case the last line was cut off, to the side then renamed
+			shardWriter = new BufferedWriter(new FileWriter(fileName+".tmp"));
+			boolean[] done = new boolean[gridLengths.size()];
+			for(int point = 0;point<done.length;point++){
+				done[point] = !mine[point];
+			}
+			for(String line : finished){
+				shardWriter.append(line+"\n");
+				done[Integer.parseInt(line.substring(0, line.indexOf(',')))] = true;
+			}
+			shardWriter.close();
+			replace(fileName);
+			shardWriter = new BufferedWriter(new FileWriter(fileName, true));
+
+			runPointsWriting(notDone(done), "metricsSummary_shard_"+shard+"_of_"+numShards+".csv");
+
+			shardWriter.flush();
+			shardWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * the grid points of one shard. Points are dealt out round robin, except
+	 * with warm start, where whole chains (the runs of points with the same
+	 * lengths) are, so every point starts from the same point before it
+	 * however many shards the sweep is split into.
+	 * @param shard
+	 * @param numShards
+	 * @return
+	 */
+	private boolean[] shardPoints(int shard, int numShards){
+		boolean[] mine = new boolean[gridLengths.size()];
+		int chain = 0;
+		for(int point = 0;point<mine.length;point++){
+			if(!warmStart){
+				mine[point] = point%numShards==shard;
+				continue;
+			}
+			if(point>0 && !Arrays.equals(gridLengths.get(point), gridLengths.get(point-1))){
+				chain++;
+			}
+			mine[point] = chain%numShards==shard;
+		}
+		return mine;
+	}
+
+	/**
+	 * renames fileName.tmp over fileName, in one step where the file
+	 * system allows it
+	 * @param fileName
+	 * @throws IOException
+	 */
+	private static void replace(String fileName) throws IOException {
+		try {
+			Files.move(Paths.get(fileName+".tmp"), Paths.get(fileName),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (java.nio.file.AtomicMoveNotSupportedException e) {
+			Files.move(Paths.get(fileName+".tmp"), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * the finished lines to keep on resume. With warm start, each trial's
+	 * flow carries from point to point along a chain (the points of mine
+	 * with the same lengths), so a chain's points are only kept if all of
+	 * them finished; the rest of a partly done chain is run again from its
+	 * start, giving the same results as an uninterrupted run.
+	 * @param finished
+	 * @param mine the points this run is responsible for
+	 * @return
+	 */
+	private ArrayList<String> wholeChains(ArrayList<String> finished, boolean[] mine){
+		if(!warmStart){
+			return finished;
+		}
+		boolean[] done = new boolean[gridLengths.size()];
+		for(String line : finished){
+			done[Integer.parseInt(line.substring(0, line.indexOf(',')))] = true;
+		}
+		ArrayList<String> kept = new ArrayList<String>();
+		for(String line : finished){
+			int point = Integer.parseInt(line.substring(0, line.indexOf(',')));
+			boolean chainDone = true;
+			for(int other = 0;other<done.length;other++){
+				if(mine[other] && !done[other] && Arrays.equals(gridLengths.get(other), gridLengths.get(point))){
+					chainDone = false;
+					break;
+				}
+			}
+			if(chainDone){
+				kept.add(line);
+			}
+		}
+		if(kept.size()<finished.size()){
+			System.out.println((finished.size()-kept.size())+" finished points of partly done warm start chains will be run again");
+		}
+		return kept;
+	}
+
+	private int[] notDone(boolean[] done){
+		int count = 0;
+		for(int point = 0;point<done.length;point++){
+			if(!done[point]){
+				count++;
+			}
+		}
+		int[] points = new int[count];
+		count = 0;
+		for(int point = 0;point<done.length;point++){
+			if(!done[point]){
+				points[count++] = point;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * the first line of a checkpoint: the seed, then every setting that
+	 * changes the trial seeds or results of a point
+	 * @return
+	 */
+	private String checkpointHeader(){
+		return "seed,"+seed+","+checkpointSettings();
+	}
+
+	private String checkpointSettings(){
+		return "trials "+numTrials+" lengths "+Arrays.toString(minLengths)+" to "+Arrays.toString(maxLengths)+" by "+lInc
+				+" percents "+Arrays.toString(minPercents)+" to "+Arrays.toString(maxPercents)+" by "+pInc
+				+" shared "+sharedTrialSeeds+" crn "+commonRandomNumbers+" warm "+warmStart
+				+" contract "+contractGraphs+" engine "+solverEngine+" incremental "+incrementalDailyFlows
+				+" precision "+targetPrecision+" min "+minTrials+" splittable "+splittableRandom;
+	}
+
+	/**
+	 * reads the header of a checkpoint written by run or runCoordinator and
+	 * sets the seed from it. Returns false if there is no checkpoint.
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean readCheckpoint(String fileName) throws IOException {
+		if(!new File(fileName).exists()){
+			return false;
+		}
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		String header = reader.readLine();
+		reader.close();
+		if(header==null){
+			return false;
+		}
+		String[] parts = header.split(",", 3);
+		if(parts.length!=3 || !parts[0].equals("seed") || !parts[2].equals(checkpointSettings())){
+			throw new IllegalStateException(fileName+" is from a sweep with other settings, delete it or change the experiment name");
+		}
+		long checkpointSeed = Long.parseLong(parts[1]);
+		if(seed!=-1 && seed!=checkpointSeed){
+			throw new IllegalStateException(fileName+" is from a sweep with seed "+checkpointSeed+", not "+seed);
+		}
+		seed = checkpointSeed;
+		return true;
+	}
+
+	/**
+	 * reads the point,stats lines of a checkpoint or shard file. Lines that
+	 * don't read back (a header, or a line cut off when the sweep was
+	 * stopped) are left out.
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	private ArrayList<String> readPointLines(String fileName) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		String line;
+		while((line = reader.readLine())!=null){
+			int comma = line.indexOf(',');
+			try {
+				int point = Integer.parseInt(line.substring(0, comma));
+				if(point<0 || point>=gridLengths.size()){
+					continue;
+				}
+				new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials, seed, calcDailyFlows)
+						.addStatsLine(line.substring(comma+1));
+				lines.add(line);
+			} catch (IllegalArgumentException e) {
+				continue;
+			} catch (StringIndexOutOfBoundsException e) {
+				continue;
+			}
+		}
+		reader.close();
+		return lines;
+	}
+
+	/**
+	 * adds up the shard files of a sweep split numShards ways and writes
+	 * summaryRes.csv (in grid order) and each point's finalResults.csv
+	 * @param numShards
+	 */
+	public void merge(int numShards){
+		buildGrid();
+		DemandAndCompetitivenessExperiment[] experiments = new DemandAndCompetitivenessExperiment[gridLengths.size()];
+		for(int point = 0;point<experiments.length;point++){
+			experiments[point] = new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials, seed, calcDailyFlows);
+		}
+
+		try {
+			for(int shard = 0;shard<numShards;shard++){
+				BufferedReader reader = new BufferedReader(new FileReader(shardFileName(shard, numShards)));
+				String line;
+				while((line = reader.readLine())!=null){
+					if(line.length()==0){
+						continue;
+					}
+					//point,stats line
+					int comma = line.indexOf(',');
+					int point = Integer.parseInt(line.substring(0, comma));
+					experiments[point].addStatsLine(line.substring(comma+1));
+				}
+				reader.close();
+			}
+
+			overallWriter = new FileWriter(baseFolder+"/"+experimentName+"/summaryRes.csv");
+			for(int point = 0;point<experiments.length;point++){
+				if(experiments[point].getTrialsRun()==0){
+					System.out.println("No results for point "+point+", skipping it");
+					continue;
+				}
+				experiments[point].setParamName(gridPercents.get(point), gridLengths.get(point));
+				experiments[point].outputOverallResults(overallWriter);
+			}
+			overallWriter.flush();
+			overallWriter.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * starts numWorkers local JVMs, each running one shard of the sweep
+	 * through DemandAndCompetitivenessExperiment's worker mode, waits for
+	 * them and merges their shard files. If no seed was set one is picked
+	 * here so every worker draws the same trial seeds.
+	 * @param numWorkers
+	 */
+	public void runCoordinator(int numWorkers){
+		String folder = baseFolder+"/"+experimentName;
+		new File(folder).mkdirs();
+		try {
+			//a restarted coordinator uses the seed it recorded, so the workers can resume
+			if(resume){
+				readCheckpoint(folder+"/checkpoint.csv");
+			}
+			if(seed==-1){
+				seed = new Random().nextLong();
+			}
+			FileWriter header = new FileWriter(folder+"/checkpoint.csv");
+			header.append(checkpointHeader()+"\n");
+			header.close();
+			writeSettings(settingsFileName());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		System.out.println("Sweep seed: "+seed);
+		int threadsEach = Math.max(1, sweepThreads/numWorkers);
+		String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+		String classPath = System.getProperty("java.class.path");
+
+		ArrayList<Process> workers = new ArrayList<Process>();
+		try {
+			for(int shard = 0;shard<numWorkers;shard++){
+				ProcessBuilder builder = new ProcessBuilder(java, "-cp", classPath, "DemandAndCompetitivenessExperiment",
+						"worker", ""+shard, ""+numWorkers, settingsFileName(), ""+threadsEach);
+				builder.inheritIO();
+				workers.add(builder.start());
+			}
+			boolean failed = false;
+			for(int shard = 0;shard<numWorkers;shard++){
+				int exit = workers.get(shard).waitFor();
+				if(exit!=0){
+					System.out.println("Worker "+shard+" exited with "+exit);
+					failed = true;
+				}
+			}
+			if(failed){
+				System.out.println("Not merging, rerun the failed workers then run merge "+numWorkers);
+				return;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		} catch (InterruptedException e) {
+			for(Process worker : workers){
+				worker.destroy();
+			}
+			Thread.currentThread().interrupt();
+			return;
+		}
+		merge(numWorkers);
+	}
+
+	/**
+	 * writes every setting of this sweep (not the number of sweep threads,
+	 * which is per machine) to a properties file readSettings can load
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void writeSettings(String fileName) throws IOException {
+		Properties settings = new Properties();
+		settings.setProperty("experimentName", experimentName);
+		settings.setProperty("baseFolder", baseFolder);
+		settings.setProperty("numTrials", ""+numTrials);
+		settings.setProperty("seed", ""+seed);
+		settings.setProperty("calcDailyFlows", ""+calcDailyFlows);
+		settings.setProperty("solverEngine", solverEngine.name());
+		settings.setProperty("contractGraphs", ""+contractGraphs);
+		settings.setProperty("trialThreads", ""+trialThreads);
+		settings.setProperty("sharedTrialSeeds", ""+sharedTrialSeeds);
+		settings.setProperty("warmStart", ""+warmStart);
+		settings.setProperty("incrementalDailyFlows", ""+incrementalDailyFlows);
+		settings.setProperty("commonRandomNumbers", ""+commonRandomNumbers);
+		settings.setProperty("splittableRandom", ""+splittableRandom);
+		settings.setProperty("ephemeralResults", ""+ephemeralResults);
+		settings.setProperty("writeQueueSize", ""+writeQueueSize);
+		settings.setProperty("collectMetrics", ""+collectMetrics);
+		settings.setProperty("resume", ""+resume);
+		settings.setProperty("binaryOutput", ""+binaryOutput);
+		settings.setProperty("targetPrecision", ""+targetPrecision);
+		settings.setProperty("minTrials", ""+minTrials);
+		settings.setProperty("minLengths", join(minLengths));
+		settings.setProperty("maxLengths", join(maxLengths));
+		settings.setProperty("lInc", ""+lInc);
+		settings.setProperty("minPercents", join(minPercents));
+		settings.setProperty("maxPercents", join(maxPercents));
+		settings.setProperty("pInc", ""+pInc);
+		if(resultCache!=null){
+			settings.setProperty("cacheFolder", resultCache.getFolder());
+			settings.setProperty("cacheBytes", ""+resultCache.getMaxBytes());
+		}
+		FileWriter writer = new FileWriter(fileName);
+		settings.store(writer, "ParameterSweep settings");
+		writer.close();
+	}
+
+	/**
+	 * a sweep with the settings writeSettings wrote
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	public static ParameterSweep readSettings(String fileName) throws IOException {
+		Properties settings = new Properties();
+		FileReader reader = new FileReader(fileName);
+		settings.load(reader);
+		reader.close();
+		ParameterSweep sweep = new ParameterSweep(settings.getProperty("experimentName"), settings.getProperty("baseFolder"),
+				Integer.parseInt(settings.getProperty("numTrials")), Long.parseLong(settings.getProperty("seed")),
+				Boolean.parseBoolean(settings.getProperty("calcDailyFlows")));
+		sweep.solverEngine = MaxFlowSolvers.Engine.valueOf(settings.getProperty("solverEngine"));
+		sweep.contractGraphs = Boolean.parseBoolean(settings.getProperty("contractGraphs"));
+		sweep.trialThreads = Integer.parseInt(settings.getProperty("trialThreads"));
+		sweep.sharedTrialSeeds = Boolean.parseBoolean(settings.getProperty("sharedTrialSeeds"));
+		sweep.warmStart = Boolean.parseBoolean(settings.getProperty("warmStart"));
+		sweep.incrementalDailyFlows = Boolean.parseBoolean(settings.getProperty("incrementalDailyFlows"));
+		sweep.commonRandomNumbers = Boolean.parseBoolean(settings.getProperty("commonRandomNumbers"));
+		sweep.splittableRandom = Boolean.parseBoolean(settings.getProperty("splittableRandom"));
+		sweep.ephemeralResults = Boolean.parseBoolean(settings.getProperty("ephemeralResults"));
+		sweep.writeQueueSize = Integer.parseInt(settings.getProperty("writeQueueSize"));
+		sweep.collectMetrics = Boolean.parseBoolean(settings.getProperty("collectMetrics"));
+		sweep.resume = Boolean.parseBoolean(settings.getProperty("resume"));
+		sweep.binaryOutput = Boolean.parseBoolean(settings.getProperty("binaryOutput"));
+		sweep.targetPrecision = Double.parseDouble(settings.getProperty("targetPrecision"));
+		sweep.minTrials = Integer.parseInt(settings.getProperty("minTrials"));
+		sweep.minLengths = parse(settings.getProperty("minLengths"));
+		sweep.maxLengths = parse(settings.getProperty("maxLengths"));
+		sweep.lInc = Integer.parseInt(settings.getProperty("lInc"));
+		sweep.minPercents = parse(settings.getProperty("minPercents"));
+		sweep.maxPercents = parse(settings.getProperty("maxPercents"));
+		sweep.pInc = Integer.parseInt(settings.getProperty("pInc"));
+		if(settings.getProperty("cacheFolder")!=null){
+			sweep.resultCache = new ResultCache(settings.getProperty("cacheFolder"), Long.parseLong(settings.getProperty("cacheBytes")));
+		}
+		return sweep;
+	}
+
+	private static String join(int[] values){
+		StringBuilder joined = new StringBuilder();
+		for(int i = 0;i<values.length;i++){
+			if(i>0){
+				joined.append(',');
+			}
+			joined.append(values[i]);
+		}
+		return joined.toString();
+	}
+
+	private static int[] parse(String values){
+		String[] parts = values.split(",");
+		int[] parsed = new int[parts.length];
+		for(int i = 0;i<parts.length;i++){
+			parsed[i] = Integer.parseInt(parts[i].trim());
+		}
+		return parsed;
+	}
+
+	/**
+	 * where the coordinator writes its settings for the workers
+	 * @return
+	 */
+	public String settingsFileName(){
+		return baseFolder+"/"+experimentName+"/sweep.properties";
+	}
+
+	private String shardFileName(int shard, int numShards){
+		return baseFolder+"/"+experimentName+"/shard_"+shard+"_of_"+numShards+".csv";
+	}
+
+	/**
+	 * runs the given grid points with a writer thread for their output, if
+	 * writeQueueSize is above 0, and waits for everything to be written.
+	 * With metrics on, the points' metrics are added up and written to
+	 * metricsFile in the experiment's folder.
+	 * @param points
+	 * @param metricsFile
+	 */
+	private void runPointsWriting(int[] points, String metricsFile){
+		sweepMetrics = new PhaseMetrics();
+		if(writeQueueSize>0){
+			resultWriter = new ResultWriter(writeQueueSize);
+		}
+		try {
+			runPoints(points);
+		} finally {
+			if(resultWriter!=null){
+				resultWriter.close();
+				resultWriter = null;
+			}
+		}
+		if(collectMetrics){
+			String csv = PhaseMetrics.getHeader()+"\n"+sweepMetrics.toCsv();
+			System.out.println("Time per phase over "+sweepMetrics.getTrials()+" trials:\n"+csv);
+			try {
+				FileWriter writer = new FileWriter(baseFolder+"/"+experimentName+"/"+metricsFile);
+				writer.append(csv);
+				writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if(resultCache!=null){
+			System.out.println("Result cache: "+resultCache.getHits()+" trials found, "+resultCache.getMisses()+" run");
+		}
+	}
+
+	/**
+	 * runs the given grid points on a ForkJoinPool. With warm start, points
+	 * with the same lengths form a chain that runs in grid order on one
+	 * thread, otherwise every point is a chain of its own.
+	 * @param points
+	 */
+	private void runPoints(int[] points){
+		ArrayList<int[]> chains = new ArrayList<int[]>();
+		int start = 0;
+		for(int i = 1;i<=points.length;i++){
+			if(i==points.length || !warmStart || !Arrays.equals(gridLengths.get(points[i]), gridLengths.get(points[start]))){
+				chains.add(Arrays.copyOfRange(points, start, i));
+				start = i;
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, sweepThreads));
+		try {
+			pool.invoke(new ChainRange(chains, 0, chains.size()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * runs a chain of grid points one after another. With warm start each
+	 * trial number keeps one WarmStartMaxFlow for the whole chain, so trial
+	 * t of a point starts from trial t's solve at the point before.
+	 * @param chain
+	 */
+	private void runChain(int[] chain){
+		WarmStartMaxFlow[] trialSolvers = null;
+		if(warmStart){
+			trialSolvers = new WarmStartMaxFlow[numTrials];
+			for(int t = 0;t<numTrials;t++){
+				trialSolvers[t] = new WarmStartMaxFlow();
+			}
+		}
+		for(int point : chain){
+			runPoint(point, trialSolvers);
+		}
+	}
+
+	/**
+	 * runs one grid point with its own experiment and writes its results
+	 * @param point
+	 * @param trialSolvers solver for each trial's multiday graph, or null for the engine
+	 */
+	private void runPoint(int point, WarmStartMaxFlow[] trialSolvers){
+		int[] lengths = gridLengths.get(point);
+		int[] percents = gridPercents.get(point);
+		System.out.println(lengths[0]+" "+lengths[1]+" "+lengths[2]+" "+percents[0]+" "+percents[1]+" "+percents[2]);
+
+		DemandAndCompetitivenessExperiment experiment = new DemandAndCompetitivenessExperiment(experimentName, baseFolder, numTrials, seed, calcDailyFlows);
+		experiment.setSolverEngine(solverEngine);
+		experiment.setContractGraphs(contractGraphs);
+		experiment.setNumThreads(trialThreads);
+		experiment.setTrialSolvers(trialSolvers);
+		experiment.setIncrementalDailyFlows(incrementalDailyFlows);
+		experiment.setTrialDraws(trialDraws);
+		experiment.setTargetPrecision(targetPrecision, minTrials);
+		experiment.setBinaryOutput(binaryOutput);
+		experiment.setResultWriter(resultWriter);
+		experiment.setResultCache(resultCache);
+		experiment.setCollectMetrics(collectMetrics);
+		experiment.setSplittableRandom(splittableRandom);
+		experiment.setEphemeralResults(ephemeralResults);
+		experiment.runExperiment(percents, lengths, pointSeeds[point]);
+		if(collectMetrics){
+			experiment.outputMetrics();
+			sweepMetrics.merge(experiment.getMetrics());
+		}
+		String statsLine = point+","+experiment.getStatsLine();
+		if(shardWriter==null){
+			experiment.outputOverallResults(overallWriter);
+			writeLine(checkpointWriter, statsLine);
+			return;
+		}
+		//workers only keep the raw stats, the merge writes the results
+		writeLine(shardWriter, statsLine);
+	}
+
+	/**
+	 * the seed of trial t of the point with these lengths and percents
+	 * (every point's are the same with shared trial seeds)
+	 * @param lengths
+	 * @param percents
+	 * @param t
+	 * @param streamSeed
+	 * @return
+	 */
+	private long trialSeed(int[] lengths, int[] percents, int t, long streamSeed){
+		long pointKey = SplitMix64Random.SHARED_POINT;
+		if(!sharedTrialSeeds){
+			pointKey = SplitMix64Random.pointKey(lengths, percents);
+		}
+		return SplitMix64Random.trialSeed(streamSeed, pointKey, t);
+	}
+
+	/**
+	 * simulates and solves trial t of the point with these lengths and
+	 * percents on its own, the same game it plays in a sweep of this seed
+	 * and settings, without running any other trial. The trial's files go
+	 * under experimentName/replay. A warm started trial is solved from
+	 * scratch, so its flow value is the same but which campaigns come up
+	 * short can differ.
+	 * @param lengths
+	 * @param percents
+	 * @param t trial number, from 1
+	 * @return the trial's stats
+	 */
+	public TrialStats replayTrial(int[] lengths, int[] percents, int t){
+		if(!splittableRandom || seed==-1){
+			throw new IllegalStateException("only trials of a seeded sweep with splittable random on can be replayed");
+		}
+		long trialSeed = trialSeed(lengths, percents, t, seed);
+		DemandAndCompetitivenessExperiment experiment = new DemandAndCompetitivenessExperiment(experimentName+"/replay", baseFolder, numTrials, seed, calcDailyFlows);
+		experiment.setSolverEngine(solverEngine);
+		experiment.setContractGraphs(contractGraphs);
+		experiment.setIncrementalDailyFlows(incrementalDailyFlows);
+		experiment.setBinaryOutput(binaryOutput);
+		experiment.setSplittableRandom(true);
+		if(commonRandomNumbers){
+			//the sweep's trial t draws come from the shared trial seed, which this is
+			CampaignDraws[] draws = new CampaignDraws[t];
+			draws[t-1] = experiment.drawGame(trialSeed, lengths.length, percents.length);
+			experiment.setTrialDraws(draws);
+		}
+		TrialStats stats = experiment.runSingleTrial(percents, lengths, t, trialSeed);
+		System.out.println("Trial "+t+" of "+Arrays.toString(lengths)+" "+Arrays.toString(percents)+" seed "+trialSeed
+				+": avg campaigns "+stats.getAvgNumCampaigns()+", under met "+stats.getNumUnderMet()
+				+", short "+stats.getTotalShort()+" of "+stats.getTotalDemanded());
+		return stats;
+	}
+
+	/**
+	 * appends a line to a checkpoint or shard file, through the result
+	 * writer if there is one
+	 * @param writer
+	 * @param line
+	 */
+	private void writeLine(Writer writer, String line){
+		if(resultWriter!=null){
+			resultWriter.appendLine(writer, line);
+			return;
+		}
+		try {
+			synchronized(writer){
+				writer.append(line+"\n");
+				writer.flush();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * a range of a list of chains, split in half until it is a single chain
+	 * so idle threads can steal the other halves
+	 */
+	private class ChainRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		ArrayList<int[]> chains;
+		int start;
+		int end;
+
+		ChainRange(ArrayList<int[]> chains, int start, int end){
+			this.chains = chains;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if(end-start<=1){
+				if(end>start){
+					runChain(chains.get(start));
+				}
+				return;
+			}
+			int middle = (start+end)>>>1;
+			invokeAll(new ChainRange(chains, start, middle), new ChainRange(chains, middle, end));
+		}
+	}
+
+
+	/*
+	 * The following methods set the grid and how it is run.
+	 */
+	public void setLengthRange(int[] minLengths, int[] maxLengths, int lInc){
+		this.minLengths = minLengths;
+		this.maxLengths = maxLengths;
+		this.lInc = lInc;
+	}
+
+	public void setPercentRange(int[] minPercents, int[] maxPercents, int pInc){
+		this.minPercents = minPercents;
+		this.maxPercents = maxPercents;
+		this.pInc = pInc;
+	}
+
+	public void setSolverEngine(MaxFlowSolvers.Engine solverEngine){
+		this.solverEngine = solverEngine;
+	}
+
+	public void setContractGraphs(boolean contractGraphs){
+		this.contractGraphs = contractGraphs;
+	}
+
+	public void setTrialThreads(int trialThreads){
+		this.trialThreads = trialThreads;
+	}
+
+	public void setSweepThreads(int sweepThreads){
+		this.sweepThreads = sweepThreads;
+	}
+
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * works every trial's seed out from the seed, the point's lengths and
+	 * percents and the trial number, and plays its game from a
+	 * SplitMix64Random, so any trial can be replayed on its own
+	 * @param splittableRandom
+	 */
+	public void setSplittableRandom(boolean splittableRandom){
+		this.splittableRandom = splittableRandom;
+	}
+
+	/**
+	 * releases every trial's graphs and flows once its stats are taken and
+	 * its files written (see GameResult.release)
+	 * @param ephemeralResults
+	 */
+	public void setEphemeralResults(boolean ephemeralResults){
+		this.ephemeralResults = ephemeralResults;
+	}
+
+	public void setIncrementalDailyFlows(boolean incrementalDailyFlows){
+		this.incrementalDailyFlows = incrementalDailyFlows;
+	}
+
+	public void setBinaryOutput(boolean binaryOutput){
+		this.binaryOutput = binaryOutput;
+	}
+
+	/**
+	 * times every phase of every trial (see PhaseMetrics) and writes each
+	 * point's metrics.csv and a summary for the whole sweep
+	 * @param collectMetrics
+	 */
+	public void setCollectMetrics(boolean collectMetrics){
+		this.collectMetrics = collectMetrics;
+	}
+
+	/**
+	 * trials whose stats are in resultCache aren't run again, and every
+	 * trial run is added to it. Warm started trials don't use the cache.
+	 * @param resultCache
+	 */
+	public void setResultCache(ResultCache resultCache){
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * with resume on (the default) run and runShard skip the points a
+	 * stopped sweep of the same experiment name and settings finished
+	 * @param resume
+	 */
+	public void setResume(boolean resume){
+		this.resume = resume;
+	}
+
+	/**
+	 * sets how many results can wait for the writer thread before the
+	 * points running block, 0 has every point write its own files
+	 * @param writeQueueSize
+	 */
+	public void setWriteQueueSize(int writeQueueSize){
+		this.writeQueueSize = writeQueueSize;
+	}
+
+	/**
+	 * lets each point stop before numTrials trials once its confidence
+	 * intervals are within targetPrecision of the means (see
+	 * DemandAndCompetitivenessExperiment.setTargetPrecision)
+	 * @param targetPrecision
+	 * @param minTrials
+	 */
+	public void setTargetPrecision(double targetPrecision, int minTrials){
+		this.targetPrecision = targetPrecision;
+		this.minTrials = minTrials;
+	}
+
+	public void setSharedTrialSeeds(boolean sharedTrialSeeds){
+		this.sharedTrialSeeds = sharedTrialSeeds;
+	}
+
+	/**
+	 * draws each trial's campaign arrivals (length, market and percent
+	 * indices) once and plays them at every grid point, so trial t is the
+	 * same game everywhere up to the lengths/percents values
+	 * @param commonRandomNumbers
+	 */
+	public void setCommonRandomNumbers(boolean commonRandomNumbers){
+		this.commonRandomNumbers = commonRandomNumbers;
+		if(commonRandomNumbers){
+			sharedTrialSeeds = true;
+		}
+	}
+
+	/**
+	 * solves each trial's multiday graph starting from the same trial's solve
+	 * at the previous point with the same lengths. Only percents change
+	 * between those points, so only campaign to sink capacities change.
+	 * Turns on shared trial seeds, since the games have to be the same. The
+	 * flows are the exact engines', so the engine has to be AUTO, DENSE or
+	 * SPARSE and graphs can't be contracted.
+	 * @param warmStart
+	 */
+	public void setWarmStart(boolean warmStart){
+		this.warmStart = warmStart;
+		if(warmStart){
+			sharedTrialSeeds = true;
+		}
+	}
+
+}
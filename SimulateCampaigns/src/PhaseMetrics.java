@@ -0,0 +1,212 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * PhaseMetrics records where trials spend their time. For each phase of a
+ * trial it adds up the wall time, the bytes allocated, the iterations of
+ * the max flow solvers (augmenting paths, or pushes and relabels) and the
+ * sizes of the graphs built. One PhaseMetrics is filled per trial and
+ * merged into its grid point's, and the points' into the sweep's.
+ *
+ * A phase is timed between begin and end on one thread. Allocated bytes
+ * come from that thread only, so work a phase hands to other threads (the
+ * PARALLEL engine's workers, the result writer) isn't counted, and are 0
+ * on JVMs that can't report them. Solvers report their iterations with
+ * addIterations, which adds them to the phase running on that thread.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class PhaseMetrics {
+
+	public enum Phase {
+		SIMULATE, //simulating the game
+		DAY_GRAPHS, //building every day's graph
+		DAY_FLOWS, //daily max flows and unused flows
+		MULTIDAY_GRAPH, //building the multiday graph
+		MULTIDAY_FLOW, //the multiday max flow
+		UNUSED_FLOW, //the multiday unused flow
+		STATS, //adding the trial up into TrialStats
+		OUTPUT //printing (or queueing) the trial's files
+	}
+
+	private static final int NUM_PHASES = Phase.values().length;
+
+	//the phase being timed on each thread, for addIterations
+	private static final ThreadLocal<PhaseMetrics> running = new ThreadLocal<PhaseMetrics>();
+	private static com.sun.management.ThreadMXBean allocations = allocationBean();
+
+	private int trials = 0;
+	private long[] calls = new long[NUM_PHASES];
+	private long[] nanos = new long[NUM_PHASES];
+	private long[] bytes = new long[NUM_PHASES];
+	private long[] iterations = new long[NUM_PHASES];
+	private long[] graphs = new long[NUM_PHASES];
+	private long[] nodes = new long[NUM_PHASES];
+	private long[] edges = new long[NUM_PHASES];
+
+	//the phase begun on this metrics' thread
+	private Phase current;
+	private long startNanos;
+	private long startBytes;
+
+
+	/**
+	 * the bean that reports per thread allocations, null if this JVM has none
+	 * @return
+	 */
+	private static com.sun.management.ThreadMXBean allocationBean(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		try {
+			if(bean instanceof com.sun.management.ThreadMXBean){
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+				if(sunBean.isThreadAllocatedMemorySupported()){
+					sunBean.setThreadAllocatedMemoryEnabled(true);
+					return sunBean;
+				}
+			}
+		} catch (UnsupportedOperationException e) {
+			//not on this JVM
+		}
+		return null;
+	}
+
+	private static long allocatedBytes(){
+		if(allocations==null){
+			return 0;
+		}
+		return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+
+	/**
+	 * starts timing a phase on this thread
+	 * @param phase
+	 */
+	public void begin(Phase phase){
+		current = phase;
+		running.set(this);
+		startBytes = allocatedBytes();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * stops timing the phase begun last
+	 */
+	public void end(){
+		long elapsed = System.nanoTime()-startNanos;
+		int p = current.ordinal();
+		nanos[p]+=elapsed;
+		bytes[p]+=allocatedBytes()-startBytes;
+		calls[p]++;
+		running.remove();
+		current = null;
+	}
+
+	/**
+	 * adds solver iterations to the phase running on this thread, if any
+	 * @param count
+	 */
+	public static void addIterations(long count){
+		PhaseMetrics metrics = running.get();
+		if(metrics!=null && metrics.current!=null){
+			metrics.iterations[metrics.current.ordinal()]+=count;
+		}
+	}
+
+	/**
+	 * records the size of a graph built or solved in a phase
+	 * @param phase
+	 * @param numNodes
+	 * @param numEdges non-zero edges
+	 */
+	public void addGraph(Phase phase, long numNodes, long numEdges){
+		graphs[phase.ordinal()]++;
+		nodes[phase.ordinal()]+=numNodes;
+		edges[phase.ordinal()]+=numEdges;
+	}
+
+	/**
+	 * counts one more trial in these metrics
+	 */
+	public void addTrial(){
+		trials++;
+	}
+
+	/**
+	 * adds another metrics' counts to these
+	 * @param other
+	 */
+	public synchronized void merge(PhaseMetrics other){
+		trials+=other.trials;
+		for(int p = 0;p<NUM_PHASES;p++){
+			calls[p]+=other.calls[p];
+			nanos[p]+=other.nanos[p];
+			bytes[p]+=other.bytes[p];
+			iterations[p]+=other.iterations[p];
+			graphs[p]+=other.graphs[p];
+			nodes[p]+=other.nodes[p];
+			edges[p]+=other.edges[p];
+		}
+	}
+
+
+	public static String getHeader(){
+		return "phase,trials,calls,millis,millisPerTrial,allocatedMB,iterations,graphs,avgNodes,avgEdges";
+	}
+
+	/**
+	 * one csv line per phase (see getHeader) and a TOTAL line
+	 * @return
+	 */
+	public synchronized String toCsv(){
+		StringBuilder csv = new StringBuilder();
+		long totalNanos = 0;
+		long totalBytes = 0;
+		long totalIterations = 0;
+		for(Phase phase : Phase.values()){
+			int p = phase.ordinal();
+			csv.append(phase).append(',').append(trials).append(',').append(calls[p]).append(',')
+					.append(nanos[p]/1e6).append(',').append(perTrial(nanos[p])/1e6).append(',')
+					.append(bytes[p]/1048576.0).append(',').append(iterations[p]).append(',')
+					.append(graphs[p]).append(',').append(average(nodes[p], graphs[p])).append(',')
+					.append(average(edges[p], graphs[p])).append('\n');
+			totalNanos+=nanos[p];
+			totalBytes+=bytes[p];
+			totalIterations+=iterations[p];
+		}
+		csv.append("TOTAL,").append(trials).append(",,").append(totalNanos/1e6).append(',')
+				.append(perTrial(totalNanos)/1e6).append(',').append(totalBytes/1048576.0).append(',')
+				.append(totalIterations).append(",,,\n");
+		return csv.toString();
+	}
+
+	private double perTrial(long value){
+		return trials==0 ? 0.0 : (double)value/trials;
+	}
+
+	private static double average(long total, long count){
+		return count==0 ? 0.0 : (double)total/count;
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public synchronized int getTrials(){
+		return trials;
+	}
+
+	public synchronized long getNanos(Phase phase){
+		return nanos[phase.ordinal()];
+	}
+
+	public synchronized long getAllocatedBytes(Phase phase){
+		return bytes[phase.ordinal()];
+	}
+
+	public synchronized long getIterations(Phase phase){
+		return iterations[phase.ordinal()];
+	}
+
+}
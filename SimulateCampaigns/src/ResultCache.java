@@ -0,0 +1,263 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ResultCache keeps the stats of finished trials on disk, so rerunning a
+ * grid that overlaps one already run (e.g. after widening maxp1) doesn't
+ * simulate and solve the points it has seen again. A trial is fixed by its
+ * lengths, percents, game setup, seed and solver settings; the SHA-1 of
+ * those (and of VERSION) names the file its stats are kept in. Only trials
+ * solved by an exact engine (see MaxFlowSolvers.isExact) are cached, since
+ * the others can split the flow differently every time they run.
+ *
+ * The cache is bounded in bytes. When it grows past maxBytes the least
+ * recently used entries are deleted, using the files' modified times, which
+ * are bumped on every hit, so the order survives between runs.
+ *
+ * VERSION goes into every key. Change it whenever the simulator or the max
+ * flow solvers change the stats they produce: entries of the old version
+ * are then never hit again and are evicted as the cache fills. clear()
+ * empties the cache straight away.
+ *
+ * Several threads can share one cache. Processes can share a folder, each
+ * evicting from what it knows about.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class ResultCache {
+
+	//bump when the simulator or the solvers change what a trial's stats come out as
+	public static final String VERSION = "3";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File folder;
+	private long maxBytes;
+	private String version;
+	private long totalBytes = 0;
+	//size of every entry, least recently used first
+	private LinkedHashMap<String,Long> entries = new LinkedHashMap<String,Long>(16, 0.75f, true);
+
+	private int hits = 0;
+	private int misses = 0;
+
+
+	public ResultCache(String folder, long maxBytes){
+		this(folder, maxBytes, VERSION);
+	}
+
+	/**
+	 * opens (or makes) a cache in folder, reading the entries already there
+	 * oldest first
+	 * @param folder
+	 * @param maxBytes
+	 * @param version added to every key, so a cache of another version isn't read
+	 */
+	public ResultCache(String folder, long maxBytes, String version){
+		this.folder = new File(folder);
+		this.maxBytes = maxBytes;
+		this.version = version;
+		this.folder.mkdirs();
+
+		ArrayList<File> files = new ArrayList<File>();
+		File[] subFolders = this.folder.listFiles();
+		if(subFolders!=null){
+			for(File sub : subFolders){
+				File[] inSub = sub.listFiles();
+				if(inSub==null){
+					continue;
+				}
+				for(File file : inSub){
+					if(file.getName().endsWith(".txt")){
+						files.add(file);
+					}
+				}
+			}
+		}
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for(File file : files){
+			String name = file.getName();
+			entries.put(name.substring(0, name.length()-4), file.length());
+			totalBytes+=file.length();
+		}
+	}
+
+
+	/**
+	 * the key of one trial: the SHA-1, in hex, of the version and every
+	 * value given, in order
+	 * @param values
+	 * @return
+	 */
+	public String key(Object... values){
+		StringBuilder text = new StringBuilder(version);
+		for(Object value : values){
+			text.append('|');
+			if(value instanceof int[]){
+				text.append(Arrays.toString((int[])value));
+			}else if(value instanceof Object[]){
+				text.append(Arrays.toString((Object[])value));
+			}else{
+				text.append(value);
+			}
+		}
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-1");
+			byte[] digest = sha.digest(text.toString().getBytes(UTF8));
+			StringBuilder hex = new StringBuilder();
+			for(byte b : digest){
+				hex.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			//every JVM has SHA-1
+			throw new RuntimeException(e);
+		}
+	}
+
+	private File fileOf(String key){
+		return new File(folder, key.substring(0, 2)+"/"+key+".txt");
+	}
+
+	/**
+	 * the stats stored under key, or null if they aren't cached
+	 * @param key
+	 * @return
+	 */
+	public synchronized TrialStats get(String key){
+		File file = fileOf(key);
+		if(entries.get(key)==null && !file.exists()){
+			misses++;
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			String line = reader.readLine();
+			reader.close();
+			TrialStats stats = TrialStats.parse(line);
+			//most recently used, here and for the next run
+			file.setLastModified(System.currentTimeMillis());
+			if(entries.get(key)==null){
+				entries.put(key, file.length());
+				totalBytes+=file.length();
+			}
+			hits++;
+			return stats;
+		} catch (IOException e) {
+			//evicted by another process, or never finished writing
+		} catch (RuntimeException e) {
+			//cut off, treat it as missing
+		}
+		remove(key);
+		misses++;
+		return null;
+	}
+
+	/**
+	 * stores stats under key, then evicts the least recently used entries
+	 * until the cache is back under its size
+	 * @param key
+	 * @param stats
+	 */
+	public synchronized void put(String key, TrialStats stats){
+		File file = fileOf(key);
+		file.getParentFile().mkdirs();
+		//written to the side and renamed, so a reader never sees half an entry
+		File temp = new File(file.getParentFile(), key+"."+Thread.currentThread().getId()+".tmp");
+		try {
+			FileWriter writer = new FileWriter(temp);
+			writer.append(stats.toString()+"\n");
+			writer.close();
+			file.delete();
+			if(!temp.renameTo(file)){
+				temp.delete();
+				return;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			temp.delete();
+			return;
+		}
+		Long oldSize = entries.remove(key);
+		if(oldSize!=null){
+			totalBytes-=oldSize;
+		}
+		entries.put(key, file.length());
+		totalBytes+=file.length();
+
+		Iterator<Map.Entry<String,Long>> oldest = entries.entrySet().iterator();
+		while(totalBytes>maxBytes && oldest.hasNext()){
+			Map.Entry<String,Long> entry = oldest.next();
+			if(entry.getKey().equals(key)){
+				continue;
+			}
+			fileOf(entry.getKey()).delete();
+			totalBytes-=entry.getValue();
+			oldest.remove();
+		}
+	}
+
+	private void remove(String key){
+		Long size = entries.remove(key);
+		if(size!=null){
+			totalBytes-=size;
+		}
+		fileOf(key).delete();
+	}
+
+	/**
+	 * deletes every entry, e.g. after a change that VERSION doesn't cover
+	 */
+	public synchronized void clear(){
+		for(String key : new ArrayList<String>(entries.keySet())){
+			remove(key);
+		}
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public synchronized int getHits(){
+		return hits;
+	}
+
+	public synchronized int getMisses(){
+		return misses;
+	}
+
+	public synchronized long getTotalBytes(){
+		return totalBytes;
+	}
+
+	public synchronized int getNumEntries(){
+		return entries.size();
+	}
+
+	public String getFolder(){
+		return folder.getPath();
+	}
+
+	public long getMaxBytes(){
+		return maxBytes;
+	}
+
+}
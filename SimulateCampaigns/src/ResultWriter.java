@@ -0,0 +1,247 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultWriter does all of a sweep's file output on one thread of its own,
+ * so the threads running trials never wait on the (network) file system.
+ * Writes are queued and done in the order they were queued. The queue is
+ * bounded: if the disk falls behind, queueing blocks until there is room,
+ * which caps how many finished results are held in memory.
+ *
+ * Lines appended to a shared writer (e.g. summaryRes.csv) are flushed in
+ * batches, whenever the queue runs empty or every FLUSH_EVERY lines,
+ * instead of after every line.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class ResultWriter {
+
+	public static final int FLUSH_EVERY = 64; //most lines appended between flushes
+
+	private ArrayBlockingQueue<Runnable> queue;
+	private Thread thread;
+
+	//how often a full queue is checked for a dead writer thread
+	private static final long SUBMIT_WAIT_MILLIS = 1000;
+
+	//set if the writer thread died, then every submit fails
+	private volatile Throwable failure;
+	//only used on the writer thread
+	private HashSet<Writer> unflushed = new HashSet<Writer>();
+	private int linesSinceFlush = 0;
+
+	//queued by close, stops the writer thread
+	private static final Runnable STOP = new Runnable() {
+		public void run() {
+		}
+	};
+
+
+	/**
+	 * starts the writer thread
+	 * @param capacity most writes waiting at once
+	 */
+	public ResultWriter(int capacity){
+		queue = new ArrayBlockingQueue<Runnable>(capacity);
+		thread = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "ResultWriter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void writeLoop(){
+		try {
+			while(true){
+				Runnable job = queue.take();
+				if(job==STOP){
+					flushAll();
+					return;
+				}
+				try {
+					job.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+				if(queue.isEmpty() || linesSinceFlush>=FLUSH_EVERY){
+					flushAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			flushAll();
+		} catch (Throwable e) {
+			//e.g. out of memory printing a result, nothing more gets written
+			failure = e;
+			queue.clear();
+			e.printStackTrace();
+		}
+	}
+
+	private void flushAll(){
+		for(Writer writer : unflushed){
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		unflushed.clear();
+		linesSinceFlush = 0;
+	}
+
+	/**
+	 * queues a write, waiting for room if the queue is full. Fails if the
+	 * writer thread has stopped, rather than waiting for room that will
+	 * never come.
+	 * @param job
+	 */
+	private void submit(Runnable job){
+		try {
+			while(true){
+				if(failure!=null){
+					throw new IllegalStateException("result writer failed", failure);
+				}
+				if(!thread.isAlive()){
+					throw new IllegalStateException("result writer is closed");
+				}
+				if(queue.offer(job, SUBMIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)){
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	/**
+	 * queues printing a game result (see GameResult.printGameResult). The
+	 * result is kept until it has been printed.
+	 * @param result
+	 * @param baseDirectory
+	 * @param binary
+	 */
+	public void printResult(GameResult result, String baseDirectory, boolean binary){
+		printResult(result, baseDirectory, binary, false);
+	}
+
+	/**
+	 * queues printing a game result, and if release is set, releasing its
+	 * graphs and flows once printed (see GameResult.release)
+	 * @param result
+	 * @param baseDirectory
+	 * @param binary
+	 * @param release
+	 */
+	public void printResult(final GameResult result, final String baseDirectory, final boolean binary, final boolean release){
+		submit(new Runnable() {
+			public void run() {
+				result.printGameResult(baseDirectory, binary);
+				if(release){
+					result.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * queues writing contents to directory/fileName, making the directory
+	 * if needed
+	 * @param directory
+	 * @param fileName
+	 * @param contents
+	 */
+	public void writeFile(final String directory, final String fileName, final String contents){
+		submit(new Runnable() {
+			public void run() {
+				new File(directory).mkdirs();
+				try {
+					BufferedWriter writer = new BufferedWriter(new FileWriter(directory+"/"+fileName));
+					writer.append(contents);
+					writer.flush();
+					writer.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * queues appending line (and a newline) to writer. The writer should
+	 * only be written through this ResultWriter while it is running.
+	 * @param writer
+	 * @param line
+	 */
+	public void appendLine(final Writer writer, final String line){
+		submit(new Runnable() {
+			public void run() {
+				try {
+					writer.append(line);
+					writer.append('\n');
+					unflushed.add(writer);
+					linesSinceFlush++;
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * waits until everything queued so far is written and flushed
+	 */
+	public void flush(){
+		final CountDownLatch done = new CountDownLatch(1);
+		submit(new Runnable() {
+			public void run() {
+				flushAll();
+				done.countDown();
+			}
+		});
+		try {
+			while(!done.await(SUBMIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)){
+				if(failure!=null){
+					throw new IllegalStateException("result writer failed", failure);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * writes everything still queued, flushes and stops the writer thread.
+	 * Writers passed to appendLine are flushed but not closed. Throws if the
+	 * writer thread died, since what was queued then wasn't all written.
+	 */
+	public void close(){
+		if(thread.isAlive() && failure==null){
+			try {
+				submit(STOP);
+				thread.join();
+			} catch (IllegalStateException e) {
+				//died while closing, reported below
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		if(failure!=null){
+			throw new IllegalStateException("result writer failed, some results weren't written", failure);
+		}
+	}
+
+}
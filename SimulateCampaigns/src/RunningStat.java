@@ -0,0 +1,120 @@
+/**
+ * RunningStat keeps the count, mean and variance of a stream of values in
+ * constant memory (Welford's method), so a stat can be updated as each
+ * trial finishes and the trial's results thrown away. Two RunningStats of
+ * separate streams can be merged into the stat of both streams, e.g.
+ * across threads or across the shards of a sweep.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class RunningStat {
+
+	//z value of a two sided 95% confidence interval
+	public static final double Z_95 = 1.959963984540054;
+
+	private long count;
+	private double mean;
+	private double m2; //sum of squared differences from the mean
+
+
+	public RunningStat(){
+	}
+
+	public RunningStat(long count, double mean, double m2){
+		this.count = count;
+		this.mean = mean;
+		this.m2 = m2;
+	}
+
+
+	/**
+	 * adds one value
+	 * @param x
+	 */
+	public void add(double x){
+		count++;
+		double delta = x-mean;
+		mean+=delta/count;
+		m2+=delta*(x-mean);
+	}
+
+	/**
+	 * adds every value of another stat (Chan et al.'s parallel update)
+	 * @param other
+	 */
+	public void merge(RunningStat other){
+		if(other.count==0){
+			return;
+		}
+		if(count==0){
+			count = other.count;
+			mean = other.mean;
+			m2 = other.m2;
+			return;
+		}
+		long total = count+other.count;
+		double delta = other.mean-mean;
+		mean+=delta*other.count/total;
+		m2+=other.m2+delta*delta*((double)count*other.count/total);
+		count = total;
+	}
+
+	public void reset(){
+		count = 0;
+		mean = 0.0;
+		m2 = 0.0;
+	}
+
+
+	public long getCount(){
+		return count;
+	}
+
+	public double getMean(){
+		return count==0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * sample variance, NaN with fewer than two values
+	 * @return
+	 */
+	public double getVariance(){
+		return count<2 ? Double.NaN : m2/(count-1);
+	}
+
+	public double getStdDev(){
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * half width of the normal approximation 95% confidence interval for
+	 * the mean (mean +/- this)
+	 * @return
+	 */
+	public double getConfidenceHalfWidth(){
+		return Z_95*getStdDev()/Math.sqrt(count);
+	}
+
+	/**
+	 * count;mean;m2, so the stat can be written out and read back exactly
+	 * @return
+	 */
+	public String toString(){
+		return count+";"+mean+";"+m2;
+	}
+
+	/**
+	 * reads a stat written by toString
+	 * @param s
+	 * @return
+	 */
+	public static RunningStat parse(String s){
+		String[] parts = s.split(";");
+		if(parts.length!=3){
+			throw new IllegalArgumentException("not a running stat: "+s);
+		}
+		return new RunningStat(Long.parseLong(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+	}
+
+}
@@ -0,0 +1,151 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SimulationEvents are the JDK Flight Recorder events of a trial: simulating
+ * the game, building each graph, each max flow solve and printing the
+ * result. Each carries the grid point (the experiment's parameter name),
+ * the trial number and, for graphs, the day (-1 for the multiday graph),
+ * its size and flow, so a recording of a sweep shows which graphs the
+ * solve time goes to. Record with e.g.
+ * 	java -XX:StartFlightRecording=filename=sweep.jfr DemandAndCompetitivenessExperiment
+ * and open the file in JDK Mission Control, or print the events with
+ * 	jfr print --categories SimulateCampaigns sweep.jfr
+ *
+ * When no recording is running an event is never committed and the fields
+ * aren't filled in, so leaving them in costs next to nothing. Callers only
+ * set fields after shouldCommit().
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class SimulationEvents {
+
+	public static final int MULTIDAY = -1; //the day of multiday graph events
+
+	@Name("SimulateCampaigns.Simulate")
+	@Label("Simulate Game")
+	@Category("SimulateCampaigns")
+	@Description("CampaignSimulator.simulateGame for one trial")
+	public static class Simulate extends Event {
+		@Label("Grid Point")
+		String point;
+		@Label("Trial")
+		int trial;
+		@Label("Campaigns")
+		int campaigns;
+	}
+
+	@Name("SimulateCampaigns.GraphBuild")
+	@Label("Build Graph")
+	@Category("SimulateCampaigns")
+	@Description("Building a day's or the multiday graph of a trial")
+	public static class GraphBuild extends Event {
+		@Label("Grid Point")
+		String point;
+		@Label("Trial")
+		int trial;
+		@Label("Day")
+		@Description("-1 for the multiday graph")
+		int day;
+		@Label("Nodes")
+		int nodes;
+		@Label("Edges")
+		int edges;
+	}
+
+	@Name("SimulateCampaigns.MaxFlow")
+	@Label("Max Flow")
+	@Category("SimulateCampaigns")
+	@Description("One getMaxFlow call on a day's or the multiday graph")
+	public static class MaxFlow extends Event {
+		@Label("Grid Point")
+		String point;
+		@Label("Trial")
+		int trial;
+		@Label("Day")
+		@Description("-1 for the multiday graph")
+		int day;
+		@Label("Nodes")
+		int nodes;
+		@Label("Edges")
+		int edges;
+		@Label("Flow")
+		long flow;
+		@Label("Solver")
+		String solver;
+	}
+
+	@Name("SimulateCampaigns.PrintResult")
+	@Label("Print Result")
+	@Category("SimulateCampaigns")
+	@Description("GameResult.printGameResult for one trial")
+	public static class PrintResult extends Event {
+		@Label("Grid Point")
+		String point;
+		@Label("Trial")
+		int trial;
+		@Label("Binary")
+		boolean binary;
+	}
+
+
+	/**
+	 * commits a graph build event begun before the graph was built
+	 * @param event
+	 * @param point
+	 * @param trial
+	 * @param day
+	 * @param nodes
+	 * @param edges
+	 */
+	public static void commit(GraphBuild event, String point, int trial, int day, int nodes, int edges){
+		event.end();
+		if(event.shouldCommit()){
+			event.point = point;
+			event.trial = trial;
+			event.day = day;
+			event.nodes = nodes;
+			event.edges = edges;
+			event.commit();
+		}
+	}
+
+	/**
+	 * commits a max flow event begun before the solve, with the flow
+	 * value (the flow out of source) worked out from the edge flows
+	 * @param event
+	 * @param point
+	 * @param trial
+	 * @param day
+	 * @param graph
+	 * @param edgeFlow
+	 * @param source
+	 * @param solver
+	 */
+	public static void commit(MaxFlow event, String point, int trial, int day, FlowGraph graph,
+			int[] edgeFlow, int source, String solver){
+		event.end();
+		if(event.shouldCommit()){
+			long flow = 0;
+			int[] from = graph.getFrom();
+			for(int e = 0;e<edgeFlow.length;e++){
+				if(from[e]==source){
+					flow+=edgeFlow[e];
+				}
+			}
+			event.point = point;
+			event.trial = trial;
+			event.day = day;
+			event.nodes = graph.getNumNodes();
+			event.edges = graph.getNumEdges();
+			event.flow = flow;
+			event.solver = solver;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,283 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * SparseMatrixFile stores the node matrices of a graph in one binary file:
+ * the node labels once, then each matrix as a list of its non-zero cells
+ * (from, to, value). A multiday matrix is mostly zeros, so this is a small
+ * fraction of the dense csv files and takes no number formatting to write.
+ *
+ * The file is (all ints big endian):
+ * 	magic, version, numNodes, numNodes labels, numMatrices,
+ * 	then per matrix its name, numCells and the from, to and value columns
+ * where a string is its length in bytes followed by its UTF-8 bytes.
+ *
+ * Files are read through a memory map, so only the cells looked at are
+ * read from disk. Running main on a file writes each matrix back out as
+ * the same csv printNodeMatrix would have written:
+ * 	java SparseMatrixFile dir/multiday.bin [outputDir]
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class SparseMatrixFile {
+
+	public static final int MAGIC = 0x53434D46; //"SCMF"
+	public static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ArrayList<String> labels;
+	private ArrayList<String> matrixNames;
+	private ArrayList<Integer> matrixStarts; //byte offset of each matrix's from column
+	private ArrayList<Integer> matrixSizes; //cells in each matrix
+	private MappedByteBuffer buffer;
+
+
+	/**
+	 * maps a file written by write and reads its labels and matrix headers
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public SparseMatrixFile(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			//the map stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			file.close();
+		}
+
+		if(buffer.getInt()!=MAGIC){
+			throw new IOException(fileName+" isn't a sparse matrix file");
+		}
+		int version = buffer.getInt();
+		if(version!=VERSION){
+			throw new IOException(fileName+" is version "+version+", can only read "+VERSION);
+		}
+		int numNodes = buffer.getInt();
+		labels = new ArrayList<String>(numNodes);
+		for(int i = 0;i<numNodes;i++){
+			labels.add(readString(buffer));
+		}
+		int numMatrices = buffer.getInt();
+		matrixNames = new ArrayList<String>(numMatrices);
+		matrixStarts = new ArrayList<Integer>(numMatrices);
+		matrixSizes = new ArrayList<Integer>(numMatrices);
+		for(int m = 0;m<numMatrices;m++){
+			matrixNames.add(readString(buffer));
+			int size = buffer.getInt();
+			matrixSizes.add(size);
+			matrixStarts.add(buffer.position());
+			//skip the from, to and value columns
+			buffer.position(buffer.position()+3*4*size);
+		}
+	}
+
+
+	/**
+	 * writes the given per-edge values of graph as one sparse matrix each.
+	 * Edges with a value of 0 are left out.
+	 * @param fileName
+	 * @param labels one per node
+	 * @param graph
+	 * @param names name of each matrix
+	 * @param edgeValues one value per edge of graph for each matrix
+	 */
+	public static void write(String fileName, ArrayList<String> labels, FlowGraph graph, String[] names, int[][] edgeValues){
+		int[] from = graph.getFrom();
+		int[] to = graph.getTo();
+		//edges in from order, so a reader can rebuild the matrix a row at a time
+		int[] arcs = graph.getArcs();
+		int[] order = new int[graph.getNumEdges()];
+		int k = 0;
+		for(int a = 0;a<arcs.length;a++){
+			if((arcs[a] & 1)==0){
+				order[k++] = arcs[a]>>1;
+			}
+		}
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1<<16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(labels.size());
+			for(String label : labels){
+				writeString(out, label);
+			}
+			out.writeInt(names.length);
+			for(int m = 0;m<names.length;m++){
+				int[] values = edgeValues[m];
+				int size = 0;
+				for(int e : order){
+					if(values[e]!=0){
+						size++;
+					}
+				}
+				writeString(out, names[m]);
+				out.writeInt(size);
+				for(int e : order){
+					if(values[e]!=0){
+						out.writeInt(from[e]);
+					}
+				}
+				for(int e : order){
+					if(values[e]!=0){
+						out.writeInt(to[e]);
+					}
+				}
+				for(int e : order){
+					if(values[e]!=0){
+						out.writeInt(values[e]);
+					}
+				}
+			}
+			out.flush();
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+
+	/*
+	 * The following methods are getters.
+	 */
+	public int getNumNodes(){
+		return labels.size();
+	}
+
+	public ArrayList<String> getLabels(){
+		return labels;
+	}
+
+	public ArrayList<String> getMatrixNames(){
+		return matrixNames;
+	}
+
+	/**
+	 * index of the matrix with this name, -1 if there isn't one
+	 * @param name
+	 * @return
+	 */
+	public int getMatrix(String name){
+		return matrixNames.indexOf(name);
+	}
+
+	public int getNumCells(int matrix){
+		return matrixSizes.get(matrix);
+	}
+
+	public int getFrom(int matrix, int cell){
+		return buffer.getInt(matrixStarts.get(matrix)+4*cell);
+	}
+
+	public int getTo(int matrix, int cell){
+		return buffer.getInt(matrixStarts.get(matrix)+4*(getNumCells(matrix)+cell));
+	}
+
+	public int getValue(int matrix, int cell){
+		return buffer.getInt(matrixStarts.get(matrix)+4*(2*getNumCells(matrix)+cell));
+	}
+
+	/**
+	 * the dense matrix, only for graphs small enough to hold as one
+	 * @param matrix
+	 * @return
+	 */
+	public int[][] toMatrix(int matrix){
+		int n = getNumNodes();
+		int[][] dense = new int[n][n];
+		for(int c = 0;c<getNumCells(matrix);c++){
+			dense[getFrom(matrix, c)][getTo(matrix, c)]+=getValue(matrix, c);
+		}
+		return dense;
+	}
+
+	/**
+	 * writes a matrix as the dense csv GameResult prints: a line of labels,
+	 * then a labelled line per node. Cells are in from order, so one row is
+	 * built at a time.
+	 * @param matrix
+	 * @param fileName
+	 */
+	public void writeCsv(int matrix, String fileName){
+		int n = getNumNodes();
+		int[] row = new int[n];
+		int size = getNumCells(matrix);
+		int c = 0;
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+			for(String name : labels){
+				writer.append(","+name);
+			}
+			writer.append('\n');
+			for(int i = 0;i<n;i++){
+				while(c<size && getFrom(matrix, c)==i){
+					row[getTo(matrix, c)]+=getValue(matrix, c);
+					c++;
+				}
+				writer.append(labels.get(i));
+				for(int j = 0;j<n;j++){
+					writer.append(","+row[j]);
+				}
+				writer.append('\n');
+				Arrays.fill(row, 0);
+			}
+			writer.flush();
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if(c<size){
+			throw new IllegalStateException("cells of "+matrixNames.get(matrix)+" aren't in from order");
+		}
+	}
+
+
+	/**
+	 * converts a sparse matrix file back to one csv per matrix, named after
+	 * the matrix, next to the file or in the given folder
+	 * @param args file [outputDir]
+	 */
+	public static void main(String[] args){
+		if(args.length<1){
+			System.out.println("usage: SparseMatrixFile file.bin [outputDir]");
+			return;
+		}
+		try {
+			SparseMatrixFile file = new SparseMatrixFile(args[0]);
+			String dir = args.length>=2 ? args[1] : new File(args[0]).getAbsoluteFile().getParent();
+			new File(dir).mkdirs();
+			for(int m = 0;m<file.getMatrixNames().size();m++){
+				file.writeCsv(m, dir+"/"+file.getMatrixNames().get(m)+".csv");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
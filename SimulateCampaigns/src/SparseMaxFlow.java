@@ -0,0 +1,256 @@
+// Successive shortest path max flow over a sparse (CSR) residual graph.
+//
+// This is the same algorithm as MinCostMaxFlow with every edge cost set
+// to 1, but the graph is stored as an edge list and the Dijkstra step uses
+// a binary heap instead of scanning every cell of an N x N matrix. Ties are
+// broken exactly like the dense version (lowest distance, then lowest node
+// index, parent only replaced on a strict improvement), so both engines
+// return the same per-edge flows.
+//
+// Running time: O(totflow * |E| log |V|) in the worst case, but in practice
+// the number of augmenting paths is small and each search only touches the
+// edges that actually exist.
+//
+// INPUT: graph -- a FlowGraph, or a matrix such that cap[i][j] is the
+//                capacity of a directed edge from node i to node j
+//
+//        source -- starting node
+//        sink -- ending node
+//
+// OUTPUT: the flow on every edge, as a matrix (same shape as cap) or as an
+//         array indexed like the graph's edge list
+//
+// To use this, create a SparseMaxFlow object, and call it like this:
+//
+//   SparseMaxFlow nf = new SparseMaxFlow();
+//   int[][] flow = nf.getMaxFlow(cap,source,sink);
+
+import java.util.Arrays;
+
+public class SparseMaxFlow implements MaxFlowSolver {
+	boolean found[];
+	int N, M, from[], to[], cap[], flow[], anti[];
+	int arcStart[], arcs[];
+	int dist[], pi[], dad[], dadFwd[], dadBwd[];
+	int heapDist[], heapNode[], heapSize;
+
+	static final int INF = MinCostMaxFlow.INF;
+	static final int COST = 1;
+
+
+	/**
+	 * takes the residual arcs from the graph. Every edge e contributes a
+	 * forward arc (2e) out of from[e] and a backward arc (2e+1) out of to[e].
+	 */
+	private void buildGraph(FlowGraph graph) {
+		N = graph.getNumNodes();
+		M = graph.getNumEdges();
+		from = graph.getFrom();
+		to = graph.getTo();
+		cap = graph.getCap();
+		arcStart = graph.getArcStart();
+		arcs = graph.getArcs();
+		findAntiParallelEdges();
+	}
+
+	/**
+	 * anti[e] is the edge going the opposite way of e (or -1). The dense
+	 * version looks at both flow[x][dad[x]] and cap[dad[x]][x] when it
+	 * augments, so we need to be able to find both edges of a node pair.
+	 */
+	private void findAntiParallelEdges() {
+		anti = new int[M];
+		Arrays.fill(anti, -1);
+		int[] mark = new int[N];
+		Arrays.fill(mark, -1);
+		for (int u = 0; u < N; u++) {
+			//remember the edges leaving u by their head
+			for (int a = arcStart[u]; a < arcStart[u+1]; a++) {
+				if ((arcs[a] & 1) == 0) mark[to[arcs[a] >> 1]] = arcs[a] >> 1;
+			}
+			//edges entering u whose tail was marked are anti-parallel
+			for (int a = arcStart[u]; a < arcStart[u+1]; a++) {
+				if ((arcs[a] & 1) == 1) {
+					int e = arcs[a] >> 1;
+					if (mark[from[e]] != -1) {
+						anti[e] = mark[from[e]];
+						anti[mark[from[e]]] = e;
+					}
+				}
+			}
+			for (int a = arcStart[u]; a < arcStart[u+1]; a++) {
+				if ((arcs[a] & 1) == 0) mark[to[arcs[a] >> 1]] = -1;
+			}
+		}
+	}
+
+	boolean search(int source, int sink) {
+		Arrays.fill(found, false);
+		Arrays.fill(dist, INF);
+		dist[source] = 0;
+		heapSize = 0;
+		push(0, source);
+
+		while (heapSize > 0) {
+			int d = heapDist[0];
+			source = heapNode[0];
+			pop();
+			if (found[source] || d != dist[source]) continue;
+			found[source] = true;
+
+			for (int a = arcStart[source]; a < arcStart[source+1]; a++) {
+				int e = arcs[a] >> 1;
+				int k, val;
+				if ((arcs[a] & 1) == 0) {
+					k = to[e];
+					if (found[k] || flow[e] >= cap[e]) continue;
+					val = dist[source] + pi[source] - pi[k] + COST;
+				} else {
+					k = from[e];
+					if (found[k] || flow[e] == 0) continue;
+					val = dist[source] + pi[source] - pi[k] - COST;
+				}
+				if (dist[k] > val) {
+					dist[k] = val;
+					dad[k] = source;
+					if ((arcs[a] & 1) == 0) {
+						dadFwd[k] = e;
+						dadBwd[k] = anti[e];
+					} else {
+						dadFwd[k] = anti[e];
+						dadBwd[k] = e;
+					}
+					push(val, k);
+				}
+			}
+		}
+		for (int k = 0; k < N; k++)
+			pi[k] = Math.min(pi[k] + dist[k], INF);
+		return found[sink];
+	}
+
+
+	/**
+	 * sets up the residual graph of graph with no flow on it
+	 */
+	void start(FlowGraph graph) {
+		buildGraph(graph);
+
+		found = new boolean[N];
+		flow = new int[M];
+		dist = new int[N];
+		dad = new int[N];
+		dadFwd = new int[N];
+		dadBwd = new int[N];
+		pi = new int[N];
+		heapDist = new int[Math.max(16, M)];
+		heapNode = new int[heapDist.length];
+	}
+
+	/**
+	 * pushes as much flow as fits along the path the last search found
+	 * and returns how much that was
+	 */
+	int augment(int source, int sink) {
+		int amt = INF;
+		for (int x = sink; x != source; x = dad[x])
+			amt = Math.min(amt, dadBwd[x] != -1 && flow[dadBwd[x]] != 0 ? flow[dadBwd[x]] :
+				cap[dadFwd[x]] - flow[dadFwd[x]]);
+		for (int x = sink; x != source; x = dad[x]) {
+			if (dadBwd[x] != -1 && flow[dadBwd[x]] != 0) {
+				flow[dadBwd[x]] -= amt;
+			} else {
+				flow[dadFwd[x]] += amt;
+			}
+		}
+		return amt;
+	}
+
+	/**
+	 * runs max flow on a graph and returns the flow on each edge
+	 */
+	public int[] getMaxFlow(FlowGraph graph, int source, int sink) {
+		start(graph);
+
+		@SuppressWarnings("unused")
+		int totflow = 0;
+		long paths = 0;
+		while (search(source, sink)) {
+			paths++;
+			totflow += augment(source, sink);
+		}
+
+		PhaseMetrics.addIterations(paths);
+		return flow;
+	}
+
+	/**
+	 * runs max flow on a capacity matrix and returns the flow matrix.
+	 * Only the non-zero cells of cap become edges.
+	 */
+	int[][] getMaxFlow(int cap[][], int source, int sink) {
+		FlowGraph graph = FlowGraph.fromMatrix(cap);
+		return graph.toMatrix(getMaxFlow(graph, source, sink));
+	}
+
+
+	/*
+	 * binary heap ordered by (distance, node) so that ties pop the lowest
+	 * node index first, the same order the dense array scan picks them in.
+	 */
+	private void push(int d, int node) {
+		if (heapSize == heapDist.length) {
+			heapDist = Arrays.copyOf(heapDist, heapSize*2);
+			heapNode = Arrays.copyOf(heapNode, heapSize*2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int p = (i-1) >> 1;
+			if (!less(d, node, heapDist[p], heapNode[p])) break;
+			heapDist[i] = heapDist[p];
+			heapNode[i] = heapNode[p];
+			i = p;
+		}
+		heapDist[i] = d;
+		heapNode[i] = node;
+	}
+
+	private void pop() {
+		heapSize--;
+		int d = heapDist[heapSize];
+		int node = heapNode[heapSize];
+		int i = 0;
+		while (true) {
+			int c = 2*i+1;
+			if (c >= heapSize) break;
+			if (c+1 < heapSize && less(heapDist[c+1], heapNode[c+1], heapDist[c], heapNode[c])) c++;
+			if (!less(heapDist[c], heapNode[c], d, node)) break;
+			heapDist[i] = heapDist[c];
+			heapNode[i] = heapNode[c];
+			i = c;
+		}
+		heapDist[i] = d;
+		heapNode[i] = node;
+	}
+
+	private static boolean less(int d1, int n1, int d2, int n2) {
+		return d1 < d2 || (d1 == d2 && n1 < n2);
+	}
+
+	public static void main (String args[]){
+		SparseMaxFlow flow = new SparseMaxFlow();
+		int cap[][] = {{0, 3, 4, 5, 0},
+				{0, 0, 2, 0, 0},
+				{0, 0, 0, 4, 1},
+				{0, 0, 0, 0, 10},
+				{0, 0, 0, 0, 0}};
+
+		int[][] flowSolution = flow.getMaxFlow(cap, 0, 4);
+		for(int i=0;i<flowSolution.length;i++){
+			for(int j=0;j<flowSolution[0].length;j++){
+				System.out.print(flowSolution[i][j]+" ");
+			}
+			System.out.println();
+		}
+	}
+}
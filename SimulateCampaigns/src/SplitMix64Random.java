@@ -0,0 +1,97 @@
+import java.util.Random;
+
+/**
+ * SplitMix64Random is a Random whose numbers come from the SplitMix64
+ * generator: the state steps by a fixed odd constant and each output is
+ * that state run through a mixing function. One instance belongs to one
+ * game, so unlike java.util.Random there is no atomic seed update to pay
+ * for (or contend on) with every number drawn.
+ *
+ * Because the mixing function scrambles any counter into a well spread
+ * seed, the seed of any trial can be worked out straight from the sweep's
+ * seed, the grid point (its lengths and percents) and the trial number
+ * with trialSeed, instead of drawing every seed before it from one chained
+ * Random. Any trial can then be run again on its own (see
+ * ParameterSweep.replayTrial), and points and trials get the same seeds
+ * whatever grid they are part of.
+ *
+ * The numbers are not the ones java.util.Random gives for the same seed.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class SplitMix64Random extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	//point key of sweeps where every point plays the same trials
+	public static final long SHARED_POINT = 0L;
+
+	private long state; //set by the constructor through setSeed
+
+
+	public SplitMix64Random(long seed){
+		super(seed);
+	}
+
+	public void setSeed(long seed){
+		//Random's constructor calls this before any of our fields are set up
+		state = seed;
+	}
+
+	/**
+	 * the SplitMix64 finalizer, a bijection that spreads every input bit
+	 * over the whole output
+	 * @param z
+	 * @return
+	 */
+	public static long mix(long z){
+		z = (z ^ (z>>>30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z>>>27))*0x94D049BB133111EBL;
+		return z ^ (z>>>31);
+	}
+
+	public long nextLong(){
+		state+=GOLDEN_GAMMA;
+		return mix(state);
+	}
+
+	protected int next(int bits){
+		return (int)(nextLong()>>>(64-bits));
+	}
+
+
+	/**
+	 * the key of a grid point, from its lengths and percents (not its place
+	 * in the grid, so a point keeps its trials when the grid changes)
+	 * @param lengths
+	 * @param percents
+	 * @return
+	 */
+	public static long pointKey(int[] lengths, int[] percents){
+		long key = GOLDEN_GAMMA;
+		for(int length : lengths){
+			key = mix(key+length);
+		}
+		//marks where the lengths end, so {3,5}{10} and {3}{5,10} differ
+		key = mix(key+lengths.length);
+		for(int percent : percents){
+			key = mix(key+percent);
+		}
+		return key;
+	}
+
+	/**
+	 * the seed of trial t of a point, worked out without drawing any other
+	 * trial's seed
+	 * @param seed the sweep's (or experiment's) seed
+	 * @param pointKey from pointKey, or SHARED_POINT when all points play the same trials
+	 * @param trial
+	 * @return
+	 */
+	public static long trialSeed(long seed, long pointKey, int trial){
+		return mix(mix(mix(seed)+pointKey)+trial*GOLDEN_GAMMA);
+	}
+
+}
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * TrialStats holds the stats one trial (one game) adds to an experiment:
+ * the game's average number of campaigns per day and one entry for every
+ * campaign that didn't meet its reach.
+ *
+ * The percent unmet of each short campaign is kept as its own term rather
+ * than summed, so an experiment adding trials in trial order gets exactly
+ * the same double totals as when everything ran one trial after another.
+ *
+ * @author betsy betsy@cs.brown.edu
+ *
+ */
+public class TrialStats {
+
+	double avgNumCampaigns;
+	int totalDemanded;
+
+	int numUnderMet;
+	int totalShort;
+	private double[] percentUnmet = new double[8]; //one per campaign under met, in node order
+	PhaseMetrics metrics; //where the trial spent its time, if it was measured (not written by toString)
+	GameResult result; //the trial's result until its files are written, null if it came from the cache
+	String cacheKey; //where to cache these stats once the trial is kept, null if they aren't cached
+	WarmStartMaxFlow solver; //the trial's warm started solver, its trial number's next start once it is kept
+
+
+	/**
+	 * records a campaign that wanted demanded impressions and got shortBy too few
+	 * @param shortBy
+	 * @param demanded
+	 */
+	public void addUnderMet(int shortBy, int demanded){
+		if(numUnderMet==percentUnmet.length){
+			percentUnmet = Arrays.copyOf(percentUnmet, numUnderMet*2);
+		}
+		percentUnmet[numUnderMet] = (double)shortBy/(double)demanded;
+		numUnderMet++;
+		totalShort+=shortBy;
+	}
+
+	/**
+	 * avgNumCampaigns;totalDemanded;totalShort then the percent unmet of
+	 * each campaign under met, written so the doubles read back exactly
+	 * @return
+	 */
+	public String toString(){
+		StringBuilder line = new StringBuilder();
+		line.append(avgNumCampaigns).append(';').append(totalDemanded).append(';').append(totalShort);
+		for(int i = 0;i<numUnderMet;i++){
+			line.append(';').append(percentUnmet[i]);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * reads stats written by toString
+	 * @param s
+	 * @return
+	 */
+	public static TrialStats parse(String s){
+		String[] parts = s.split(";");
+		if(parts.length<3){
+			throw new IllegalArgumentException("not trial stats: "+s);
+		}
+		TrialStats stats = new TrialStats();
+		stats.avgNumCampaigns = Double.parseDouble(parts[0]);
+		stats.totalDemanded = Integer.parseInt(parts[1]);
+		stats.totalShort = Integer.parseInt(parts[2]);
+		stats.numUnderMet = parts.length-3;
+		stats.percentUnmet = new double[Math.max(8, stats.numUnderMet)];
+		for(int i = 0;i<stats.numUnderMet;i++){
+			stats.percentUnmet[i] = Double.parseDouble(parts[3+i]);
+		}
+		return stats;
+	}
+
+	/*
+	 * The following methods are getters.
+	 */
+	public double getAvgNumCampaigns(){
+		return avgNumCampaigns;
+	}
+
+	public int getTotalDemanded(){
+		return totalDemanded;
+	}
+
+	public int getNumUnderMet(){
+		return numUnderMet;
+	}
+
+	public int getTotalShort(){
+		return totalShort;
+	}
+
+	/**
+	 * the percent unmet of the i-th campaign under met
+	 * @param i
+	 * @return
+	 */
+	public double getPercentUnmet(int i){
+		return percentUnmet[i];
+	}
+
+}
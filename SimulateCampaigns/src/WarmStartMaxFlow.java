@@ -0,0 +1,256 @@
+// Successive shortest path max flow that starts from the solve of the
+// previous graph.
+//
+// Neighbouring points of a sweep run the same games (same trial seeds) with
+// different percents, so their multiday graphs have exactly the same edges
+// and only the campaign to sink capacities change. This solver is
+// SparseMaxFlow, and it keeps every augmenting path of the last graph's
+// solve in order. When the next graph has the same edges it:
+//   1) replays the last solve's paths, for as long as the changed
+//      capacities can't have changed them, then
+//   2) searches for the rest of the paths like a cold solve.
+// A graph with different edges is solved from zero.
+//
+// A path search only sees capacities through which edges are full. Until
+// a changed edge is full under one capacity and not the other, the search
+// is the one the last solve made, so its path and the potentials it leaves
+// are the recorded ones, and only the amount pushed is worked out again.
+// The flows are therefore exactly the ones SparseMaxFlow (and
+// MinCostMaxFlow) give; only the searches before the first such edge are
+// saved.
+//
+// One WarmStartMaxFlow should be used per chain of graphs (e.g. per trial
+// number), and not by two threads at once. next() gives a solver that
+// starts from this one's last solve without changing this one.
+//
+// To use this, create a WarmStartMaxFlow object, and call it like this:
+//
+//   WarmStartMaxFlow nf = new WarmStartMaxFlow();
+//   int[] flow = nf.getMaxFlow(graph,source,sink);
+//   ...change some capacities...
+//   int[] next = nf.getMaxFlow(nextGraph,source,sink);
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class WarmStartMaxFlow extends SparseMaxFlow {
+
+	//the graph solved last and every augmenting path of its solve, in order.
+	//a path is {amount pushed, arcs from the sink back to the source...}
+	//with arc 2e for edge e used forwards and 2e+1 backwards. piChanges are
+	//the {node, new potential...} pairs of the search that found each path.
+	FlowGraph lastGraph;
+	int lastSource, lastSink;
+	ArrayList<int[]> lastPaths;
+	ArrayList<int[]> lastPiChanges;
+
+	int warmSolves, coldSolves;
+	long replayedPaths, searchedPaths;
+
+
+	public WarmStartMaxFlow() {
+	}
+
+	/**
+	 * a solver that starts from the last solve of last. Solves don't change
+	 * the paths they started from, so the two can be used apart.
+	 */
+	private WarmStartMaxFlow(WarmStartMaxFlow last) {
+		lastGraph = last.lastGraph;
+		lastSource = last.lastSource;
+		lastSink = last.lastSink;
+		lastPaths = last.lastPaths;
+		lastPiChanges = last.lastPiChanges;
+	}
+
+	/**
+	 * a solver for the next graph of the chain, starting from this one's
+	 * last solve. Only if it is kept (the trial it solves is counted) does
+	 * it take this one's place, so trials that are dropped leave the chain
+	 * as it was.
+	 * @return
+	 */
+	public WarmStartMaxFlow next() {
+		return new WarmStartMaxFlow(this);
+	}
+
+
+	/**
+	 * true if graph has the same nodes and edges (in the same order) as the
+	 * last graph solved, so the last solve's paths exist in it
+	 */
+	boolean sameEdges(FlowGraph graph, int source, int sink) {
+		if (lastGraph == null || source != lastSource || sink != lastSink)
+			return false;
+		if (graph == lastGraph)
+			return true;
+		return graph.getNumNodes() == lastGraph.getNumNodes()
+				&& Arrays.equals(graph.getFrom(), lastGraph.getFrom())
+				&& Arrays.equals(graph.getTo(), lastGraph.getTo());
+	}
+
+	/**
+	 * replays the last solve's paths on the new capacities for as long as
+	 * each path's search would be the same, adding them to paths and
+	 * piChanges. Stops before the first path whose search could differ, or
+	 * after the first path that can't push the amount it did last time.
+	 */
+	void replay(int[] lastCap, ArrayList<int[]> paths, ArrayList<int[]> piChanges) {
+		int numChanged = 0;
+		int[] changed = new int[M];
+		for (int e = 0; e < M; e++) {
+			if (cap[e] != lastCap[e])
+				changed[numChanged++] = e;
+		}
+
+		for (int i = 0; i < lastPaths.size(); i++) {
+			for (int c = 0; c < numChanged; c++) {
+				int e = changed[c];
+				if ((flow[e] >= cap[e]) != (flow[e] >= lastCap[e]))
+					return;
+			}
+
+			int[] changes = lastPiChanges.get(i);
+			for (int c = 0; c < changes.length; c += 2)
+				pi[changes[c]] = changes[c+1];
+
+			int[] path = lastPaths.get(i);
+			int amt = INF;
+			for (int p = 1; p < path.length; p++) {
+				int e = path[p] >> 1;
+				amt = Math.min(amt, (path[p] & 1) == 1 ? flow[e] : cap[e] - flow[e]);
+			}
+			for (int p = 1; p < path.length; p++) {
+				if ((path[p] & 1) == 1) {
+					flow[path[p] >> 1] -= amt;
+				} else {
+					flow[path[p] >> 1] += amt;
+				}
+			}
+			replayedPaths++;
+			if (amt != path[0]) {
+				//the same path with less (or more) on it, every search after it can differ
+				path = Arrays.copyOf(path, path.length);
+				path[0] = amt;
+				paths.add(path);
+				piChanges.add(changes);
+				return;
+			}
+			paths.add(path);
+			piChanges.add(changes);
+		}
+	}
+
+	/**
+	 * the arcs of the path the last search found, from the sink back to the
+	 * source, after a slot for the amount pushed
+	 */
+	int[] pathArcs(int source, int sink) {
+		int length = 0;
+		for (int x = sink; x != source; x = dad[x])
+			length++;
+		int[] path = new int[length+1];
+		int p = 1;
+		for (int x = sink; x != source; x = dad[x]) {
+			if (dadBwd[x] != -1 && flow[dadBwd[x]] != 0) {
+				path[p++] = (dadBwd[x] << 1) | 1;
+			} else {
+				path[p++] = dadFwd[x] << 1;
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * the {node, potential} pairs of pi that aren't what they were in oldPi
+	 */
+	int[] piChanges(int[] oldPi) {
+		int count = 0;
+		for (int k = 0; k < N; k++) {
+			if (pi[k] != oldPi[k])
+				count++;
+		}
+		int[] changes = new int[2*count];
+		int c = 0;
+		for (int k = 0; k < N; k++) {
+			if (pi[k] != oldPi[k]) {
+				changes[c++] = k;
+				changes[c++] = pi[k];
+			}
+		}
+		return changes;
+	}
+
+
+	/**
+	 * runs max flow on a graph, replaying what it can of the last solve if
+	 * the graph has the same edges as the last one, and returns the flow on
+	 * each edge (the same flow SparseMaxFlow gives)
+	 */
+	public int[] getMaxFlow(FlowGraph graph, int source, int sink) {
+		int[] lastCap = null;
+		if (sameEdges(graph, source, sink)) {
+			lastCap = lastGraph.getCap();
+			warmSolves++;
+		} else {
+			coldSolves++;
+		}
+		start(graph);
+
+		ArrayList<int[]> paths = new ArrayList<int[]>();
+		ArrayList<int[]> piChanges = new ArrayList<int[]>();
+		if (lastCap != null)
+			replay(lastCap, paths, piChanges);
+
+		long searched = 0;
+		int[] oldPi = new int[N];
+		while (true) {
+			System.arraycopy(pi, 0, oldPi, 0, N);
+			if (!search(source, sink))
+				break;
+			searched++;
+			int[] path = pathArcs(source, sink);
+			path[0] = augment(source, sink);
+			paths.add(path);
+			piChanges.add(piChanges(oldPi));
+		}
+		searchedPaths += searched;
+		PhaseMetrics.addIterations(searched);
+
+		lastGraph = graph;
+		lastSource = source;
+		lastSink = sink;
+		lastPaths = paths;
+		lastPiChanges = piChanges;
+		return flow;
+	}
+
+	/**
+	 * forgets the last solve so the next graph is solved from zero
+	 */
+	public void reset() {
+		lastGraph = null;
+		lastPaths = null;
+		lastPiChanges = null;
+	}
+
+	public int getWarmSolves() {
+		return warmSolves;
+	}
+
+	public int getColdSolves() {
+		return coldSolves;
+	}
+
+	/**
+	 * the augmenting paths taken from the last solve instead of searched for
+	 * @return
+	 */
+	public long getReplayedPaths() {
+		return replayedPaths;
+	}
+
+	public long getSearchedPaths() {
+		return searchedPaths;
+	}
+}